@@ -95,28 +95,15 @@ public class BBSRand extends SecureRandomSpi {
 		rnd.nextBytes(seed);
 		SecureRandom rng = new SecureRandom(seed);
 
-		MPInt tmp;
 		System.out.println("BBSRand generateParam");
-		System.out.println("generate p");
-		for (;;) {
-			Prime pn = new Prime(bitLen, rng);	// generate p
-			p = pn.getPrime();
-			tmp = p.mod(MPInt.valueOf(4));
-			if (tmp.intValue() == 3) {
-				System.out.println("p = " + p.toString(16));
-				break;
-			}
-		}
-		System.out.println("generate q");
-		for (;;) {
-			Prime qn = new Prime(bitLen, rng);	// generate q
-			q = qn.getPrime();
-			tmp = q.mod(MPInt.valueOf(4));
-			if (tmp.intValue() == 3) {
-				System.out.println("q = " + q.toString(16));
-				break;
-			}
-		}
+		System.out.println("generate p, q");
+		// p = q = 3 mod 4, searched concurrently
+		ParallelPrimeGenerator pg = new ParallelPrimeGenerator(rng);
+		MPInt[] pq = pg.generate(bitLen, 2, 3, 4);
+		p = pq[0];
+		q = pq[1];
+		System.out.println("p = " + p.toString(16));
+		System.out.println("q = " + q.toString(16));
 		n = p.multiply(q);
 	}
 
@@ -75,51 +75,37 @@ public class EME1 extends MessageEncode {
 	 * @return the encoded data
 	 */
 	protected byte[] encodeEME1(byte[] src, int emLen) {
-		byte[] db, tmp, hash, seed, maskSeed;
-
 		seedLen = digestLen;
 		int msgLen = src.length;
-		int psLen = emLen - digestLen - seedLen - 1 - msgLen;
+		int dbLen = emLen - seedLen;
+		int psLen = dbLen - digestLen - 1 - msgLen;
 		if (psLen < 0) {
 			return null;			// Message too long
 		}
 
-		// S = 0x00 .... 0x00
-		tmp = new byte[psLen + 1];
-		// M' = S || 01 || M
-		tmp[psLen] = (byte) 0x01;
-		tmp = ByteArray.concat(tmp, src);
-
-		// DB = cHash || M'
+		// EM = seed || DB, DB = cHash || S (0x00 .... 0x00) || 01 || M
+		byte[] enc = new byte[emLen];
 		digest.reset();
-		db = digest.digest((byte[]) parameter);
-		db = ByteArray.concat(db, tmp);
+		digest.update((byte[]) parameter);
+		try {
+			digest.digest(enc, seedLen, digestLen);
+		} catch (DigestException e) {
+			return null;
+		}
+		enc[seedLen + digestLen + psLen] = (byte) 0x01;
+		System.arraycopy(src, 0, enc, emLen - msgLen, msgLen);
 
-		seed = new byte[seedLen];
+		byte[] seed = new byte[seedLen];
 		rng.nextBytes(seed);
+		System.arraycopy(seed, 0, enc, 0, seedLen);
 
-		// dbMask = MGF(seed, emLen - seedLen)
-		mgf.init((emLen - seedLen) * 8);
-		maskSeed = mgf.encode(seed);
-
-		// maskedDB = DB ^ dbMask
-		for (int i = 0; i < emLen - seedLen; i++) {
-			db[i] = (byte) (db[i] ^ maskSeed[i]);
-		}
-
-		// seedMask = MGF(maskedDB, seedLen)
-		mgf.init(seedLen * 8);
-		hash = mgf.encode(db);
+		// maskedDB = DB ^ MGF(seed, emLen - seedLen)
+		mgf.maskInto(enc, 0, seedLen, enc, seedLen, dbLen);
 
-		// maskedSeed = seed ^ seedMask
-		for (int i = 0; i < seedLen; i++) {
-			seed[i] = (byte) (seed[i] ^ hash[i]);
-		}
+		// maskedSeed = seed ^ MGF(maskedDB, seedLen)
+		mgf.maskInto(enc, seedLen, dbLen, enc, 0, seedLen);
 
-		// EM = maskedSeed || maskedDB. 
-		byte[] enc = new byte[seedLen];
-		System.arraycopy(seed, 0, enc, 0, seedLen);
-		enc = ByteArray.concat(enc, db);
+		// EM = maskedSeed || maskedDB
 		return enc;
 	}
 
@@ -130,66 +116,41 @@ public class EME1 extends MessageEncode {
 	 * @return the decoded data
 	 */
 	protected byte[] decodeEME1(byte[] enc) {
-		int dbLen;
-		byte[] maskSeed, maskDB, db, seed;
-		byte[] hash, hash2;
-
 		seedLen = digestLen;
 		encLen = enc.length;
 		if (encLen < seedLen + digestLen + 1) {
 			return null;			// Decoding error
 		}
+		int dbLen = encLen - seedLen;
+		byte[] em = enc.clone();
 
-		maskSeed = new byte[seedLen];
-		System.arraycopy(enc, 0, maskSeed, 0, seedLen);
-		maskDB = new byte[encLen - seedLen];
-		System.arraycopy(enc, seedLen, maskDB, 0, encLen - seedLen);
-
-		// seedMask = MGF(maskedDB, seedLen)
-		mgf.init(seedLen * 8);
-		seed = mgf.encode(maskDB);
-
-		// seed = maskedSeed ^ seedMask
-		for (int i = 0; i < seedLen; i++) {
-			seed[i] = (byte) (seed[i] ^ maskSeed[i]);
-		}
+		// seed = maskedSeed ^ MGF(maskedDB, seedLen)
+		mgf.maskInto(em, seedLen, dbLen, em, 0, seedLen);
 
-		// dbMask = MGF(seed, encLen - seedLen)
-		mgf.init((encLen - seedLen) * 8);
-		db = mgf.encode(seed);
-
-		// DB = DB ^ maskedDB
-		for (int i = 0; i < encLen - seedLen; i++) {
-			db[i] = (byte) (db[i] ^ maskDB[i]);
-		}
+		// DB = maskedDB ^ MGF(seed, encLen - seedLen)
+		mgf.maskInto(em, 0, seedLen, em, seedLen, dbLen);
 
 		digest.reset();
-		hash = digest.digest((byte[]) parameter);
+		byte[] hash = digest.digest((byte[]) parameter);
 
-		hash2 = new byte[digestLen];
-		System.arraycopy(db, 0, hash2, 0, digestLen);
-
-		if (!ByteArray.isEqual(hash, hash2)) {
+		if (!ByteArray.isEqual(hash, 0, em, seedLen, digestLen)) {
 			return null;
 		}
 
 		// Exist Separate Code(0x01) ?
-		dbLen = db.length;
 		int off;
-		for (off = digestLen; off < dbLen; off++) {
-			if (db[off] != 0) {
+		for (off = seedLen + digestLen; off < encLen; off++) {
+			if (em[off] != 0) {
 				break;
 			}
 		}
-		if (off == dbLen || db[off] != 0x01) {
+		if (off == encLen || em[off] != 0x01) {
 			return null;
 		}
 		off++;
-		int msgLen = dbLen - off;
+		int msgLen = encLen - off;
 		byte[] bM = new byte[msgLen];
-		for (int i = 0; i < msgLen; i++) {
-			bM[i] = db[off++];
-		}
+		System.arraycopy(em, off, bM, 0, msgLen);
 
 		return bM;
 	}
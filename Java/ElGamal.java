@@ -6,20 +6,40 @@
 package Blanclux.crypto.cipher;
 
 import Blanclux.math.*;
+import Blanclux.crypto.encode.KDF3;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.crypto.*;
 import javax.crypto.spec.*;
 
 /**
  * ElGamal
+ * <p>
+ * With a subgroup key (p, q, g) a message block M is an arbitrary element
+ * of Z_p*, so C2^q = M^q reveals a fingerprint of M.  The hybrid modes
+ * therefore do not encrypt the secret key as a block under a subgroup
+ * key; the key block is C1 = g^r || K xor KDF3(C1 || y^r), which only
+ * uses y^r as a Diffie-Hellman secret.  Full-group keys keep the key
+ * block C1 || C2 of the padded key.
  */
 public class ElGamal {
 
 	/** modulus p */
 	private MPInt p;
 
+	/** public key object (encryption) */
+	private ElGamalPublicKey pubKey;
+
+	/** private key object (decryption) */
+	private ElGamalPrivateKey privKey;
+
 	/** generator g */
 	private MPInt g;
 
@@ -37,19 +57,22 @@ public class ElGamal {
 	/** block size of cipher text (bytes) */
 	private int cipherBlockSize;
 
+	/** subgroup order (null: full-group key) */
+	private MPInt q;
+
 	/** random generator */
 	private SecureRandom rng = null;
 
 	/** Cipher object */
 	private Cipher cipher;
 	/** secret cipher algorithm */
-	private static String algorithm = "AES";
+	static String algorithm = "AES";
 	/** cipher mode of operation */
-	private static String opmode = "AES/CBC/PKCS5Padding";
+	static String opmode = "AES/CBC/PKCS5Padding";
 	/** key length */
-	private static int keyLength = 128;
+	static int keyLength = 128;
 	/** IV */
-	private static byte[] iv = {0, 0, 0, 0, 0, 0, 0, 0,
+	static byte[] iv = {0, 0, 0, 0, 0, 0, 0, 0,
 							    0, 0, 0, 0, 0, 0, 0, 0};
 
 	/**
@@ -81,6 +104,19 @@ public class ElGamal {
 		return cipherBlockSize;
 	}
 
+	/**
+	 * Gets the key block length of the hybrid modes
+	 *  getCipherBlockSize(), or getCipherBlockSize() / 2 + key length
+	 *  for a subgroup key
+	 */
+	public int getKeyBlockSize() {
+		return getKeyBlockSize(keyLength / 8);
+	}
+
+	int getKeyBlockSize(int keyLen) {
+		return (q != null) ? cipherBlockSize / 2 + keyLen : cipherBlockSize;
+	}
+
 	/**
 	 * Encrypt initialization
 	 *
@@ -92,9 +128,11 @@ public class ElGamal {
 
 		if (key instanceof ElGamalPublicKey) {
 			ElGamalPublicKey publicKey = (ElGamalPublicKey) key;
+			pubKey = publicKey;
 			p = publicKey.getModulus();
 			g = publicKey.getGenerator();
 			y = publicKey.getPublic();
+			q = publicKey.getSubgroupOrder();
 			blockSize = p.bitLength() / 8;
 			cipherBlockSize = ((p.bitLength() + 7) / 8) * 2;
 			rng = random;
@@ -112,9 +150,11 @@ public class ElGamal {
 
 		if (key instanceof ElGamalPrivateKey) {
 			ElGamalPrivateKey privateKey = (ElGamalPrivateKey) key;
+			privKey = privateKey;
 			p = privateKey.getModulus();
 			g = privateKey.getGenerator();
 			x = privateKey.getPrivate();
+			q = privateKey.getSubgroupOrder();
 			blockSize = p.bitLength() / 8;
 			cipherBlockSize = ((p.bitLength() + 7) / 8) * 2;
 		} else {
@@ -132,6 +172,8 @@ public class ElGamal {
 
 			this.p = pi;
 			this.g = gi;
+			this.q = null;
+			privKey = null;
 
 			blockSize = pi.bitLength() / 8;
 			cipherBlockSize = ((pi.bitLength() + 7) / 8) * 2;
@@ -148,6 +190,11 @@ public class ElGamal {
 	 */
 	public void encrypt(byte[] in, int inOffset, int inLen, byte[] out,
 			int outOffset) {
+		encrypt(in, inOffset, inLen, out, outOffset, rng);
+	}
+
+	private void encrypt(byte[] in, int inOffset, int inLen, byte[] out,
+			int outOffset, SecureRandom random) {
 
 		int len;
 		if (inLen > blockSize) {
@@ -157,29 +204,149 @@ public class ElGamal {
 		}
 
 		// Byte to MPInt
-		byte[] mB = new byte[len];
-		System.arraycopy(in, inOffset, mB, 0, len);
-		MPInt m = new MPInt(1, mB);
+		MPInt m = new MPInt(1, in, inOffset, len);
+
+		// cipher text C = (C1, C2)
+		MPInt[] c = encryptBlock(m, random);
+
+		// Output C
+		MPInt.toFixedBytes(c[0], out, outOffset, cipherBlockSize / 2);
+		MPInt.toFixedBytes(c[1], out, outOffset + cipherBlockSize / 2,
+				cipherBlockSize / 2);
+	}
+
+	/**
+	 * Encryption
+	 *  Reads min(inLen, getBlockSize()) bytes at the position of in and
+	 *  writes getCipherBlockSize() bytes at the position of out.  Heap and
+	 *  direct buffers are read and written in place.
+	 * 
+	 * @param in the plain text buffer
+	 * @param inLen the plain text length
+	 * @param out the cipher text buffer
+	 */
+	public void encrypt(ByteBuffer in, int inLen, ByteBuffer out) {
 
-		// Generate random number r (0 < r < p - 1)
-		MPInt r;
-		MPInt p_1 = p.subtract(MPInt.ONE);
+		int len;
+		if (inLen > blockSize) {
+			len = blockSize;
+		} else {
+			len = inLen;
+		}
 
-		do {
-			r = new MPInt(p.bitLength() - 1, rng);
-		} while ((r.compareTo(p_1)) >= 0);
+		// Byte to MPInt
+		MPInt m = MPInt.fromBytes(in, len);
 
 		// cipher text C = (C1, C2)
-		MPInt c1 = g.modPow(r, p);
-		MPInt c2 = (m.multiply(y.modPow(r, p))).mod(p);
+		MPInt[] c = encryptBlock(m, rng);
 
 		// Output C
-		byte[] c1B = MPInt.toFixedBytes(c1, cipherBlockSize / 2);
-		byte[] c2B = MPInt.toFixedBytes(c2, cipherBlockSize / 2);
-		System.arraycopy(c1B, 0, out, outOffset + cipherBlockSize / 2
-				- c1B.length, c1B.length);
-		System.arraycopy(c2B, 0, out, outOffset + cipherBlockSize - c2B.length,
-				c2B.length);
+		MPInt.toFixedBytes(c[0], out, cipherBlockSize / 2);
+		MPInt.toFixedBytes(c[1], out, cipherBlockSize / 2);
+	}
+
+	/**
+	 * C1 = g^r mod p, C2 = m * y^r mod p
+	 */
+	private MPInt[] encryptBlock(MPInt m, SecureRandom random) {
+		MPInt[] pair = randomPair(random);
+
+		return new MPInt[] { pair[0], (m.multiply(pair[1])).mod(p) };
+	}
+
+	/**
+	 * { g^r mod p, y^r mod p } (from the precompute pool if attached)
+	 */
+	private MPInt[] randomPair(SecureRandom random) {
+		ElGamalPrecomputePool pool = pubKey.getPrecomputePool();
+
+		if (pool != null) {
+			return pool.take();
+		}
+		MPInt r = pubKey.randomExponent(random);
+		return new MPInt[] { pubKey.modPowGenerator(r),
+							 pubKey.modPowPublic(r) };
+	}
+
+	/**
+	 * Wraps a secret key into a key block
+	 *  (getKeyBlockSize(key.length) bytes at out[off])
+	 *
+	 * @param key the secret key
+	 * @param out the key block area
+	 * @param off the output offset
+	 * @param random random generator
+	 */
+	void wrapKey(byte[] key, byte[] out, int off, SecureRandom random)
+		throws NoSuchAlgorithmException {
+		if (q == null) {
+			// padding
+			byte[] in = new byte[key.length + 1];
+			in[0] = (byte) 0x80;
+			System.arraycopy(key, 0, in, 1, key.length);
+			encrypt(in, 0, in.length, out, off, random);
+			return;
+		}
+
+		// C1 || K xor KDF3(C1 || y^r)
+		int half = cipherBlockSize / 2;
+		MPInt[] pair = randomPair(random);
+		MPInt.toFixedBytes(pair[0], out, off, half);
+		byte[] mask = keyMask(out, off, half, pair[1], key.length);
+		for (int i = 0; i < key.length; i++) {
+			out[off + half + i] = (byte) (key[i] ^ mask[i]);
+		}
+	}
+
+	/**
+	 * Unwraps the secret key of a key block
+	 *
+	 * @param in the key block area
+	 * @param off the input offset
+	 * @param keyLen the secret key length (bytes)
+	 * @return the secret key (null: illegal key block)
+	 */
+	byte[] unwrapKey(byte[] in, int off, int keyLen)
+		throws NoSuchAlgorithmException {
+		if (q == null) {
+			byte[] out = new byte[cipherBlockSize];
+			int n = decrypt(in, off, out, 0);
+			// unpadding
+			if (n != keyLen + 1 || out[0] != (byte) 0x80) {
+				return null;
+			}
+			byte[] key = new byte[keyLen];
+			System.arraycopy(out, 1, key, 0, keyLen);
+			return key;
+		}
+
+		// C1 must be in the subgroup
+		int half = cipherBlockSize / 2;
+		MPInt c1 = new MPInt(1, in, off, half);
+		if (c1.signum() <= 0 || c1.compareTo(p) >= 0
+			|| !MPInt.isOne(c1.modPow(q, p))) {
+			return null;
+		}
+		byte[] mask = keyMask(in, off, half, c1.modPow(x, p), keyLen);
+		byte[] key = new byte[keyLen];
+		for (int i = 0; i < keyLen; i++) {
+			key[i] = (byte) (in[off + half + i] ^ mask[i]);
+		}
+		return key;
+	}
+
+	/**
+	 * KDF3-SHA256(C1 || y^r) of len bytes (C1 at c1[off], half bytes)
+	 */
+	static byte[] keyMask(byte[] c1, int off, int half, MPInt s, int len)
+		throws NoSuchAlgorithmException {
+		byte[] z = new byte[2 * half];
+		System.arraycopy(c1, off, z, 0, half);
+		MPInt.toFixedBytes(s, z, half, half);
+
+		KDF3 kdf = new KDF3(MessageDigest.getInstance("SHA-256"));
+		kdf.init(len * 8);
+		return kdf.encode(z);
 	}
 
 	/**
@@ -189,27 +356,61 @@ public class ElGamal {
 	 * @param inOffset the input offset
 	 * @param out the decrypted text (allocated)
 	 * @param outOffset the output offset
-	 * @return the decrypted text length
+	 * @return the decrypted text length (-1: illegal cipher text)
 	 */
 	public int decrypt(byte[] in, int inOffset, byte[] out, int outOffset) {
 
 		// Byte to MPInt
-		byte[] c1B = new byte[cipherBlockSize / 2];
-		System.arraycopy(in, inOffset, c1B, 0, cipherBlockSize / 2);
-		MPInt c1 = new MPInt(1, c1B);
-
-		byte[] c2B = new byte[cipherBlockSize / 2];
-		System.arraycopy(in, inOffset + cipherBlockSize / 2, c2B, 0,
+		MPInt c1 = new MPInt(1, in, inOffset, cipherBlockSize / 2);
+		MPInt c2 = new MPInt(1, in, inOffset + cipherBlockSize / 2,
 				cipherBlockSize / 2);
-		MPInt c2 = new MPInt(1, c2B);
 
 		// Decrypt
-		MPInt m = c2.multiply(c1.modPow(x.negate(), p)).mod(p);
+		MPInt m = decryptBlock(c1, c2);
+		if (m == null) {
+			return -1;
+		}
 
 		// Output M
-		byte[] mB = MPInt.toByteArray(m);
-		System.arraycopy(mB, 0, out, outOffset,	mB.length);
-		return mB.length;
+		return MPInt.i2OSP(m, out, outOffset);
+	}
+
+	/**
+	 * Decryption
+	 *  Reads getCipherBlockSize() bytes at the position of in and writes
+	 *  the decrypted text at the position of out.
+	 *
+	 * @param in the cipher text buffer (C1, C2)
+	 * @param out the decrypted text buffer
+	 * @return the decrypted text length (-1: illegal cipher text)
+	 */
+	public int decrypt(ByteBuffer in, ByteBuffer out) {
+
+		// Byte to MPInt
+		MPInt c1 = MPInt.fromBytes(in, cipherBlockSize / 2);
+		MPInt c2 = MPInt.fromBytes(in, cipherBlockSize / 2);
+
+		// Decrypt
+		MPInt m = decryptBlock(c1, c2);
+		if (m == null) {
+			return -1;
+		}
+
+		// Output M
+		return MPInt.i2OSP(m, out);
+	}
+
+	/**
+	 * M = C2 / C1^x mod p
+	 *  (null: C1 not in [1, p-1])
+	 */
+	private MPInt decryptBlock(MPInt c1, MPInt c2) {
+		if (c1.signum() <= 0 || c1.compareTo(p) >= 0) {
+			return null;
+		}
+		MPInt s = (privKey != null) ? privKey.modPowInverse(c1)
+				: c1.modPow(x.negate(), p);
+		return c2.multiply(s).mod(p);
 	}
 
 	/**
@@ -238,12 +439,8 @@ public class ElGamal {
 			cipher.init(Cipher.ENCRYPT_MODE, seckey, params);
 			byte[] c1 = cipher.doFinal(src, 0, len);
 
-			byte[] c2 = new byte[cipherBlockSize];
-			// padding
-			byte[] in = new byte[keyLen + 1];
-			in[0] = (byte) 0x80;
-			System.arraycopy(key, 0, in, 1, keyLen);
-			encrypt(in, 0, in.length, c2, 0);
+			byte[] c2 = new byte[getKeyBlockSize(keyLen)];
+			wrapKey(key, c2, 0, rng);
 
 			byte[] enc = new byte[c1.length + c2.length];
 			System.arraycopy(c1, 0, enc, 0, c1.length);
@@ -280,29 +477,47 @@ public class ElGamal {
 	public byte[] decrypt_hybrid(byte[] src, int len) {
 		int keyLen = keyLength / 8;
 
-		if (src == null || src.length < len
-			|| len < (cipherBlockSize + keyLen)) {
+		int head = getKeyBlockSize(keyLen);
+
+		if (src == null || src.length < len || len < (head + keyLen)) {
 			return null;
 		}
+		return decryptHybrid(src, len - head, src, len - head);
+	}
 
-		try {
-			byte[] c2 = new byte[cipherBlockSize];
-			System.arraycopy(src, len - cipherBlockSize, c2, 0,
-							 cipherBlockSize);
+	/**
+	 * Hybrid decryption (key block held separately)
+	 * 
+	 * @param src  the encrypted data (without the key block)
+	 * @param len  the encrypted data length (byte)
+	 * @param wrappedKey  the key block (getKeyBlockSize() bytes)
+	 * @return the decrypted data
+	 * @see ElGamalMultiRecipient
+	 */
+	public byte[] decrypt_hybrid(byte[] src, int len, byte[] wrappedKey) {
+		if (src == null || src.length < len || wrappedKey == null
+			|| wrappedKey.length < getKeyBlockSize()) {
+			return null;
+		}
+		return decryptHybrid(src, len, wrappedKey, 0);
+	}
 
-			byte[] out = new byte[keyLen + 1];
-			decrypt(c2, 0, out, 0);
-			// unpadding
-			byte[] key = new byte[keyLen];
-			System.arraycopy(out, 1, key, 0, keyLen);
+	private byte[] decryptHybrid(byte[] src, int len, byte[] c2, int c2Off) {
+		int keyLen = keyLength / 8;
 
+		try {
+			byte[] key = unwrapKey(c2, c2Off, keyLen);
+			if (key == null) {
+				System.err.println("ElGamal/decrypt_hybrid error: Illegal key block");
+				return null;
+			}
 			SecretKey seckey = new SecretKeySpec(key, algorithm);
 
 			IvParameterSpec params = new IvParameterSpec(iv);
 
 			cipher.init(Cipher.DECRYPT_MODE, seckey, params);
 		
-			byte[] dest = cipher.doFinal(src, 0, len - cipherBlockSize);
+			byte[] dest = cipher.doFinal(src, 0, len);
 
 			return dest;
 		} catch (InvalidKeyException e) {
@@ -311,6 +526,9 @@ public class ElGamal {
 		} catch (InvalidAlgorithmParameterException e) {
 			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
 			return null;
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
+			return null;
 		} catch (IllegalStateException e) {
 			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
 			return null;
@@ -323,8 +541,151 @@ public class ElGamal {
 		}
 	}
 	
+	/**
+	 * Hybrid encryption (stream)
+	 * Output: the wrapped key block (getKeyBlockSize() bytes) followed
+	 * by the AES stream, so the data can be decrypted as it arrives.
+	 * Memory use does not depend on the data length.
+	 *
+	 * @param src  the plain text channel
+	 * @param dst  the encrypted data channel
+	 * @return the encrypted data length (-1: error)
+	 */
+	public long encrypt_hybrid(ReadableByteChannel src, WritableByteChannel dst)
+		throws IOException {
+		int keyLen = keyLength / 8;
+
+		try {
+			KeyGenerator keyGen = KeyGenerator.getInstance(algorithm);
+			IvParameterSpec params = new IvParameterSpec(iv);
+
+			keyGen.init(keyLength, rng);
+			SecretKey seckey = keyGen.generateKey();
+			byte[] key = seckey.getEncoded();
+
+			// header: wrapped key
+			byte[] head = new byte[getKeyBlockSize(keyLen)];
+			wrapKey(key, head, 0, rng);
+			writeFully(dst, ByteBuffer.wrap(head));
+
+			cipher.init(Cipher.ENCRYPT_MODE, seckey, params);
+			return cipherStream(head.length, src, dst);
+		} catch (InvalidKeyException e) {
+			System.err.println("ElGamal/encrypt_hybrid error: " + e.toString());
+			return -1;
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamal/encrypt_hybrid error: " + e.toString());
+			return -1;
+		} catch (InvalidAlgorithmParameterException e) {
+			System.err.println("ElGamal/encrypt_hybrid error: " + e.toString());
+			return -1;
+		}
+	}
+
+	/**
+	 * Hybrid decryption (stream)
+	 * Input: the format of encrypt_hybrid(ReadableByteChannel, ...)
+	 *
+	 * @param src  the encrypted data channel
+	 * @param dst  the plain text channel
+	 * @return the plain text length (-1: error)
+	 */
+	public long decrypt_hybrid(ReadableByteChannel src, WritableByteChannel dst)
+		throws IOException {
+		int keyLen = keyLength / 8;
+
+		try {
+			byte[] head = new byte[getKeyBlockSize(keyLen)];
+			if (!readFully(src, ByteBuffer.wrap(head))) {
+				return -1;
+			}
+			byte[] key = unwrapKey(head, 0, keyLen);
+			if (key == null) {
+				System.err.println("ElGamal/decrypt_hybrid error: Illegal key block");
+				return -1;
+			}
+			SecretKey seckey = new SecretKeySpec(key, algorithm);
+			IvParameterSpec params = new IvParameterSpec(iv);
+
+			cipher.init(Cipher.DECRYPT_MODE, seckey, params);
+			return cipherStream(0, src, dst);
+		} catch (InvalidKeyException e) {
+			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
+			return -1;
+		} catch (InvalidAlgorithmParameterException e) {
+			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
+			return -1;
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamal/decrypt_hybrid error: " + e.toString());
+			return -1;
+		}
+	}
+
+	/** stream buffer size (bytes) */
+	private static final int STREAM_BUFFER = 64 * 1024;
+
+	/**
+	 * Runs the initialized cipher from src to dst.
+	 *
+	 * @param count the number of bytes written before
+	 * @return count + the number of bytes written (-1: error)
+	 */
+	private long cipherStream(long count, ReadableByteChannel src,
+			WritableByteChannel dst) throws IOException {
+		ByteBuffer in = ByteBuffer.allocateDirect(STREAM_BUFFER);
+		ByteBuffer out = ByteBuffer.allocateDirect(
+				STREAM_BUFFER + 2 * cipher.getBlockSize());
+
+		try {
+			while (src.read(in) >= 0) {
+				in.flip();
+				out.clear();
+				cipher.update(in, out);
+				out.flip();
+				count += writeFully(dst, out);
+				in.clear();
+			}
+			in.flip();
+			out.clear();
+			cipher.doFinal(in, out);
+			out.flip();
+			count += writeFully(dst, out);
+			return count;
+		} catch (ShortBufferException e) {
+			System.err.println("ElGamal/hybrid stream error: " + e.toString());
+			return -1;
+		} catch (IllegalBlockSizeException e) {
+			System.err.println("ElGamal/hybrid stream error: " + e.toString());
+			return -1;
+		} catch (BadPaddingException e) {
+			System.err.println("ElGamal/hybrid stream error: " + e.toString());
+			return -1;
+		}
+	}
+
+	private static int writeFully(WritableByteChannel ch, ByteBuffer buf)
+		throws IOException {
+		int n = buf.remaining();
+		while (buf.hasRemaining()) {
+			ch.write(buf);
+		}
+		return n;
+	}
+
+	private static boolean readFully(ReadableByteChannel ch, ByteBuffer buf)
+		throws IOException {
+		while (buf.hasRemaining()) {
+			if (ch.read(buf) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Encrypt (multiple block)
+	 *  With a subgroup key the blocks are not hidden completely (see
+	 *  the class comment); use the hybrid modes for such keys.
 	 *
 	 * @param src  the plain text
 	 * @param len  the plain text length (byte)
@@ -343,7 +704,6 @@ public class ElGamal {
 			block++;
 		}
 		byte[] in  = new byte[blockSize - 1];
-		byte[] out = new byte[cipherBlockSize];
 
 		byte[] dest = new byte[block * cipherBlockSize];
 
@@ -354,9 +714,7 @@ public class ElGamal {
 			}
 			in[0] = pad;
 			System.arraycopy(src, i * (blockSize - 2), in, 1, bsize);
-			encrypt(in, 0, bsize + 1, out, 0);
-			System.arraycopy(out, 0, dest, i * cipherBlockSize,
-							 cipherBlockSize);
+			encrypt(in, 0, bsize + 1, dest, i * cipherBlockSize);
 		}
 		return dest;
 	}
@@ -378,7 +736,6 @@ public class ElGamal {
 		int block = len / cipherBlockSize;
 		int bSize = cipherBlockSize / 2;
 
-		byte[] in  = new byte[cipherBlockSize];
 		byte[] out = new byte[bSize - 1];
 
 		byte[] temp = new byte[block * bSize];
@@ -387,8 +744,10 @@ public class ElGamal {
 		int decLen = 0;
 
 		for (int i = 0; i < block; i++) {
-			System.arraycopy(src, i * cipherBlockSize, in, 0, cipherBlockSize);
-			outLen = decrypt(in, 0, out, 0);
+			outLen = decrypt(src, i * cipherBlockSize, out, 0);
+			if (outLen < 1) {
+				return null;
+			}
 			System.arraycopy(out, 1, temp, decLen, outLen - 1);
 			decLen += outLen - 1;
 		}
@@ -398,4 +757,165 @@ public class ElGamal {
 		return dest;
 	}
 
+	/**
+	 * Encrypt (multiple block, parallel on the common pool)
+	 *
+	 * @param src  the plain text
+	 * @param len  the plain text length (byte)
+	 * @return the encrypted data (same format as encrypt(byte[], int))
+	 */
+	public byte[] encryptParallel(byte[] src, int len) {
+		return encryptParallel(src, len, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encrypt (multiple block, parallel)
+	 * The blocks are split into chunks; each chunk has its own scratch
+	 * buffer and its own SecureRandom stream seeded from the random
+	 * generator, and writes directly into its place of the result.
+	 *
+	 * @param src  the plain text
+	 * @param len  the plain text length (byte)
+	 * @param pool the ForkJoinPool
+	 * @return the encrypted data (same format as encrypt(byte[], int))
+	 */
+	public byte[] encryptParallel(final byte[] src, final int len,
+			ForkJoinPool pool) {
+
+		if (src == null || src.length < len) {
+			return null;
+		}
+
+		final int bsize = blockSize - 2;
+		int block = (len + bsize - 1) / bsize;
+		final byte[] dest = new byte[block * cipherBlockSize];
+
+		pool.invoke(new Blocks(0, block, chunkSize(block, pool), new BlockTask() {
+			public void process(int lo, int hi) {
+				SecureRandom random = newStream();
+				byte[] in = new byte[blockSize - 1];
+
+				for (int i = lo; i < hi; i++) {
+					int n = Math.min(bsize, len - i * bsize);
+					in[0] = (byte) 0x80;
+					System.arraycopy(src, i * bsize, in, 1, n);
+					encrypt(in, 0, n + 1, dest, i * cipherBlockSize, random);
+				}
+			}
+		}));
+		return dest;
+	}
+
+	/**
+	 * Decrypt (multiple block, parallel on the common pool)
+	 *
+	 * @param src  the encrypted data
+	 * @param len  the encrypted data length (byte)
+	 * @return the decrypted data
+	 */
+	public byte[] decryptParallel(byte[] src, int len) {
+		return decryptParallel(src, len, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Decrypt (multiple block, parallel)
+	 *
+	 * @param src  the encrypted data
+	 * @param len  the encrypted data length (byte)
+	 * @param pool the ForkJoinPool
+	 * @return the decrypted data
+	 */
+	public byte[] decryptParallel(final byte[] src, int len, ForkJoinPool pool) {
+		if (src == null || src.length < len) {
+			return null;
+		}
+		if (len % cipherBlockSize != 0) {
+			return null;
+		}
+		int block = len / cipherBlockSize;
+		final int bSize = cipherBlockSize / 2;
+		final byte[] temp = new byte[block * bSize];
+		final int[] outLen = new int[block];
+
+		pool.invoke(new Blocks(0, block, chunkSize(block, pool), new BlockTask() {
+			public void process(int lo, int hi) {
+				for (int i = lo; i < hi; i++) {
+					outLen[i] = decrypt(src, i * cipherBlockSize, temp, i * bSize);
+				}
+			}
+		}));
+
+		// remove the padding bytes
+		int decLen = 0;
+		for (int i = 0; i < block; i++) {
+			if (outLen[i] < 1) {
+				return null;
+			}
+			decLen += outLen[i] - 1;
+		}
+		byte[] dest = new byte[decLen];
+		decLen = 0;
+		for (int i = 0; i < block; i++) {
+			System.arraycopy(temp, i * bSize + 1, dest, decLen, outLen[i] - 1);
+			decLen += outLen[i] - 1;
+		}
+		return dest;
+	}
+
+	/** blocks per task */
+	private static int chunkSize(int block, ForkJoinPool pool) {
+		return Math.max(1, block / (4 * pool.getParallelism()));
+	}
+
+	/**
+	 * SecureRandom stream of one task (seeded from rng)
+	 */
+	private SecureRandom newStream() {
+		byte[] seed = new byte[32];
+		rng.nextBytes(seed);
+		try {
+			SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+			random.setSeed(seed);
+			return random;
+		} catch (NoSuchAlgorithmException e) {
+			return rng;
+		}
+	}
+
+	/**
+	 * Work on a range of blocks
+	 */
+	private interface BlockTask {
+		void process(int lo, int hi);
+	}
+
+	/**
+	 * Range of blocks, split until chunk size
+	 */
+	private static class Blocks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int lo;
+		private final int hi;
+		private final int chunk;
+		private final BlockTask task;
+
+		Blocks(int lo, int hi, int chunk, BlockTask task) {
+			this.lo = lo;
+			this.hi = hi;
+			this.chunk = chunk;
+			this.task = task;
+		}
+
+		protected void compute() {
+			if (hi - lo <= chunk) {
+				task.process(lo, hi);
+				return;
+			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Blocks(lo, mid, chunk, task),
+					  new Blocks(mid, hi, chunk, task));
+		}
+	}
+
 }
@@ -0,0 +1,153 @@
+/**
+ * ElGamalCheck.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.tools;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.security.*;
+import java.util.Arrays;
+
+import Blanclux.math.*;
+import Blanclux.crypto.cipher.*;
+
+/**
+ * ElGamal self check
+ *  round trips of the block and hybrid modes for a subgroup key and a
+ *  full-group key, rejection of tampered key blocks, and replacement of
+ *  the precompute pool of a key
+ */
+public class ElGamalCheck {
+	private static int pBits = 1024;
+	private static int qBits = 160;
+
+	private static int failed = 0;
+
+	/**
+	 * Usage : [pBits qBits]
+	 */
+	public static void main(String[] args) throws Exception {
+
+		if (args.length >= 2) {
+			pBits = Integer.parseInt(args[0]);
+			qBits = Integer.parseInt(args[1]);
+		}
+		System.out.println("*** ElGamal Check (p: " + pBits + " bits, q: "
+						   + qBits + " bits) ***");
+
+		SecureRandom rng = new SecureRandom();
+		ElGamalKeyPairGenerator gen = new ElGamalKeyPairGenerator(pBits, qBits,
+																   rng);
+		KeyPair sub = gen.generateKeyPair();
+
+		MPInt p = gen.getModulus();
+		MPInt g = gen.getGenerator();
+		MPInt x = MPInt.random(rng, p.subtract(MPInt.TWO)).add(MPInt.ONE);
+		MPInt y = g.modPow(x, p);
+		KeyPair full = new KeyPair(new ElGamalPublicKey(p, g, y),
+								   new ElGamalPrivateKey(p, g, y, x));
+
+		doCheck("subgroup key", sub, rng);
+		doCheck("full-group key", full, rng);
+
+		System.out.println((failed == 0) ? "\nall OK" : "\n" + failed + " NG");
+		if (failed != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static void doCheck(String name, KeyPair kp, SecureRandom rng)
+		throws Exception {
+		System.out.println("\n< " + name + " >");
+
+		ElGamal enc = new ElGamal();
+		ElGamal dec = new ElGamal();
+		enc.initEncrypt(kp.getPublic(), rng);
+		dec.initDecrypt(kp.getPrivate());
+
+		byte[] msg = new byte[1000];
+		rng.nextBytes(msg);
+
+		// block mode
+		byte[] c = enc.encrypt(msg, msg.length);
+		check("block", Arrays.equals(msg, dec.decrypt(c, c.length)));
+
+		// hybrid
+		c = enc.encrypt_hybrid(msg, msg.length);
+		check("hybrid", Arrays.equals(msg, dec.decrypt_hybrid(c, c.length)));
+
+		int head = c.length - enc.getKeyBlockSize();
+		int half = enc.getCipherBlockSize() / 2;
+		byte[] bad = c.clone();
+		bad[head + half - 1] ^= 0x01;		// C1
+		check("hybrid (tampered key block)",
+			  dec.decrypt_hybrid(bad, bad.length) == null);
+		bad = c.clone();
+		Arrays.fill(bad, head, head + half, (byte) 0);
+		check("hybrid (C1 = 0)", dec.decrypt_hybrid(bad, bad.length) == null);
+
+		// stream
+		ByteArrayOutputStream bo = new ByteArrayOutputStream();
+		enc.encrypt_hybrid(Channels.newChannel(new ByteArrayInputStream(msg)),
+						   Channels.newChannel(bo));
+		c = bo.toByteArray();
+		bo = new ByteArrayOutputStream();
+		long n = dec.decrypt_hybrid(
+				Channels.newChannel(new ByteArrayInputStream(c)),
+				Channels.newChannel(bo));
+		check("stream", n == msg.length
+			  && Arrays.equals(msg, bo.toByteArray()));
+
+		bad = c.clone();
+		bad[half - 1] ^= 0x01;
+		n = dec.decrypt_hybrid(Channels.newChannel(new ByteArrayInputStream(bad)),
+							   Channels.newChannel(new ByteArrayOutputStream()));
+		check("stream (tampered key block)", n == -1);
+
+		// session
+		ElGamalSession ses = new ElGamalSession(
+				(ElGamalPublicKey) kp.getPublic(), rng, 4, 1 << 20);
+		ElGamalSessionDecrypter sd = new ElGamalSessionDecrypter(
+				(ElGamalPrivateKey) kp.getPrivate(), 2);
+		boolean ok = true;
+		for (int i = 0; i < 10; i++) {
+			c = ses.encrypt(msg, 0, 100 + i);
+			ok &= Arrays.equals(Arrays.copyOf(msg, 100 + i), sd.decrypt(c));
+		}
+		check("session", ok && sd.getMisses() == ses.getSessionCount());
+
+		bad = c.clone();
+		bad[ses.getKeyBlockSize()] ^= 0x01;		// nonce
+		check("session (tampered nonce)", sd.decrypt(bad) == null);
+
+		// precompute pool: a second pool replaces (and closes) the first
+		ElGamalPublicKey pub = (ElGamalPublicKey) kp.getPublic();
+		new ElGamalPrecomputePool(pub, 8, 2, rng);
+		ElGamalPrecomputePool pool = new ElGamalPrecomputePool(pub, 8, 2, rng);
+		c = enc.encrypt(msg, msg.length);
+		ok = Arrays.equals(msg, dec.decrypt(c, c.length))
+			&& pub.getPrecomputePool() == pool && poolThreads() == 2;
+		pool.close();
+		check("precompute pool", ok && pub.getPrecomputePool() == null
+			  && poolThreads() == 0);
+	}
+
+	private static int poolThreads() {
+		int n = 0;
+		for (Thread t : Thread.getAllStackTraces().keySet()) {
+			if (t.isAlive() && t.getName().startsWith("ElGamalPrecompute-")) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static void check(String name, boolean ok) {
+		System.out.println("  " + name + " : " + (ok ? "OK" : "NG"));
+		if (!ok) {
+			failed++;
+		}
+	}
+}
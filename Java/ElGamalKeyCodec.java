@@ -0,0 +1,171 @@
+/**
+ * ElGamalKeyCodec.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import Blanclux.math.*;
+
+import java.nio.ByteBuffer;
+import java.security.Key;
+
+/**
+ * Fixed-layout binary encoding of ElGamal keys
+ * <p>
+ * All values are unsigned big-endian of fixed width:
+ * <pre>
+ *  0  'E' 'G'
+ *  2  version (1)
+ *  3  type (0: public, 1: private)
+ *  4  pLen (short, bytes of p)
+ *  6  qLen (short, bytes of q, 0: no q)
+ *  8  p [pLen] || g [pLen] || y [pLen] || q [qLen]
+ *     || x [qLen, or pLen without q] (private key only)
+ * </pre>
+ * The offset of every field follows from the header, so a key can be
+ * located and decoded in place (e.g. in a mapped file).
+ */
+final class ElGamalKeyCodec {
+	static final byte VERSION = 1;
+	static final byte PUBLIC = 0;
+	static final byte PRIVATE = 1;
+
+	/** header length (bytes) */
+	static final int HEADER = 8;
+
+	/** encoding format name */
+	static final String FORMAT = "RAW";
+
+	private ElGamalKeyCodec() {
+	}
+
+	/**
+	 * Gets the encoded length (bytes)
+	 */
+	static int length(int type, int pLen, int qLen) {
+		int len = HEADER + 3 * pLen + qLen;
+		if (type == PRIVATE) {
+			len += (qLen != 0) ? qLen : pLen;
+		}
+		return len;
+	}
+
+	/**
+	 * Encodes a key (x = null for a public key)
+	 */
+	static byte[] encode(MPInt p, MPInt g, MPInt y, MPInt q, MPInt x) {
+		int type = (x == null) ? PUBLIC : PRIVATE;
+		int pLen = (p.bitLength() + 7) / 8;
+		int qLen = (q == null) ? 0 : (q.bitLength() + 7) / 8;
+		byte[] enc = new byte[length(type, pLen, qLen)];
+
+		encode(ByteBuffer.wrap(enc), p, g, y, q, x);
+		return enc;
+	}
+
+	/**
+	 * Encodes a key at the buffer position (x = null for a public key)
+	 */
+	static void encode(ByteBuffer dst, MPInt p, MPInt g, MPInt y, MPInt q,
+			MPInt x) {
+		int pLen = (p.bitLength() + 7) / 8;
+		int qLen = (q == null) ? 0 : (q.bitLength() + 7) / 8;
+
+		if (pLen > 0xffff) {
+			throw new IllegalArgumentException("Modulus too large.");
+		}
+		dst.put((byte) 'E');
+		dst.put((byte) 'G');
+		dst.put(VERSION);
+		dst.put((x == null) ? PUBLIC : PRIVATE);
+		dst.putShort((short) pLen);
+		dst.putShort((short) qLen);
+		put(dst, p, pLen);
+		put(dst, g, pLen);
+		put(dst, y, pLen);
+		if (q != null) {
+			put(dst, q, qLen);
+		}
+		if (x != null) {
+			put(dst, x, (qLen != 0) ? qLen : pLen);
+		}
+	}
+
+	/**
+	 * Gets the encoded length of the key at the buffer position
+	 *  (the position is not changed)
+	 */
+	static int length(ByteBuffer src) {
+		int pos = src.position();
+
+		return length(type(src), src.getShort(pos + 4) & 0xffff,
+					  src.getShort(pos + 6) & 0xffff);
+	}
+
+	/**
+	 * Gets the type of the key at the buffer position
+	 *  (the position is not changed)
+	 */
+	static int type(ByteBuffer src) {
+		int pos = src.position();
+
+		if (src.remaining() < HEADER || src.get(pos) != 'E'
+			|| src.get(pos + 1) != 'G' || src.get(pos + 2) != VERSION) {
+			throw new IllegalArgumentException("Illegal key encoding.");
+		}
+		int type = src.get(pos + 3);
+		if (type != PUBLIC && type != PRIVATE) {
+			throw new IllegalArgumentException("Illegal key encoding.");
+		}
+		return type;
+	}
+
+	/**
+	 * Decodes the key at the buffer position
+	 *
+	 * @param src the input buffer
+	 * @param ctx the Montgomery context of p for a public key
+	 *  (null: created on first use)
+	 * @return ElGamalPublicKey or ElGamalPrivateKey
+	 */
+	static Key decode(ByteBuffer src, MontgomeryContext ctx) {
+		int type = type(src);
+		int pLen = src.getShort(src.position() + 4) & 0xffff;
+		int qLen = src.getShort(src.position() + 6) & 0xffff;
+
+		if (src.remaining() < length(type, pLen, qLen)) {
+			throw new IllegalArgumentException("Illegal key encoding.");
+		}
+		src.position(src.position() + HEADER);
+		MPInt p = MPInt.fromBytes(src, pLen);
+		MPInt g = MPInt.fromBytes(src, pLen);
+		MPInt y = MPInt.fromBytes(src, pLen);
+		MPInt q = (qLen != 0) ? MPInt.fromBytes(src, qLen) : null;
+
+		if (type == PUBLIC) {
+			ElGamalPublicKey key = (q != null)
+				? new ElGamalPublicKey(p, g, y, q)
+				: new ElGamalPublicKey(p, g, y);
+			if (ctx != null) {
+				key.setMontgomeryContext(ctx);
+			}
+			return key;
+		}
+		MPInt x = MPInt.fromBytes(src, (qLen != 0) ? qLen : pLen);
+		ElGamalPrivateKey key = (q != null)
+			? new ElGamalPrivateKey(p, g, y, x, q)
+			: new ElGamalPrivateKey(p, g, y, x);
+		return key;
+	}
+
+	private static void put(ByteBuffer dst, MPInt v, int len) {
+		if (v.signum() == 0) {
+			for (int i = 0; i < len; i++) {
+				dst.put((byte) 0);
+			}
+		} else {
+			MPInt.toFixedBytes(v, dst, len);
+		}
+	}
+}
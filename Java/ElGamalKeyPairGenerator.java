@@ -0,0 +1,115 @@
+/**
+ * ElGamalKeyPairGenerator.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import Blanclux.math.*;
+import Blanclux.tools.ParamGen;
+
+import java.security.KeyPair;
+import java.security.SecureRandom;
+
+/**
+ * ElGamal key pair generation over FFC parameters (p, q, g)
+ * <p>
+ * g generates the subgroup of prime order q, and the private key x is
+ * drawn uniformly from [1, q-1].  The keys carry q, so encryption draws
+ * r mod q and decryption reduces the exponent mod q: all exponents are
+ * q.bitLength() bits long instead of p.bitLength().
+ */
+public class ElGamalKeyPairGenerator {
+
+	/** modulus */
+	private final MPInt p;
+
+	/** subgroup order */
+	private final MPInt q;
+
+	/** generator of order q */
+	private final MPInt g;
+
+	/** random generator */
+	private final SecureRandom rng;
+
+	/**
+	 * Constructor (parameters generated by ParamGen)
+	 *
+	 * @param pBits the bit length of p
+	 * @param qBits the bit length of q (multiple of 8)
+	 * @param random random generator
+	 */
+	public ElGamalKeyPairGenerator(int pBits, int qBits, SecureRandom random) {
+		this(new ParamGen(qBits, pBits, random).generateParameters(), random);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param param { p, q, g } (ParamGen.generateParameters)
+	 * @param random random generator
+	 */
+	public ElGamalKeyPairGenerator(MPInt[] param, SecureRandom random) {
+		this(param[0], param[1], param[2], random);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param modulus prime p
+	 * @param order prime q (q | p - 1)
+	 * @param generator g of order q
+	 * @param random random generator
+	 */
+	public ElGamalKeyPairGenerator(MPInt modulus, MPInt order,
+			MPInt generator, SecureRandom random) {
+		if (!modulus.subtract(MPInt.ONE).mod(order).isZero()) {
+			throw new IllegalArgumentException("q does not divide p - 1.");
+		}
+		if (generator.compareTo(MPInt.ONE) <= 0
+				|| generator.compareTo(modulus) >= 0
+				|| !MPInt.isOne(generator.modPow(order, modulus))) {
+			throw new IllegalArgumentException("g is not of order q.");
+		}
+		p = modulus;
+		q = order;
+		g = generator;
+		rng = (random == null) ? new SecureRandom() : random;
+	}
+
+	/**
+	 * Gets a modulus
+	 */
+	public MPInt getModulus() {
+		return p;
+	}
+
+	/**
+	 * Gets a subgroup order
+	 */
+	public MPInt getSubgroupOrder() {
+		return q;
+	}
+
+	/**
+	 * Gets a generator
+	 */
+	public MPInt getGenerator() {
+		return g;
+	}
+
+	/**
+	 * Generates a key pair
+	 *  x: 1 <= x < q, y = g^x mod p
+	 *
+	 * @return the key pair (ElGamalPublicKey, ElGamalPrivateKey)
+	 */
+	public KeyPair generateKeyPair() {
+		MPInt x = MPInt.random(rng, q.subtract(MPInt.ONE)).add(MPInt.ONE);
+		MPInt y = g.modPow(x, p);
+
+		return new KeyPair(new ElGamalPublicKey(p, g, y, q),
+						   new ElGamalPrivateKey(p, g, y, x, q));
+	}
+}
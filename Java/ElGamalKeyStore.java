@@ -0,0 +1,309 @@
+/**
+ * ElGamalKeyStore.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import Blanclux.math.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory-mapped store of ElGamal keys
+ * <p>
+ * File layout (big-endian):
+ * <pre>
+ *  0  magic "EGKS", version (int), count (int), reserved (int)
+ * 16  index: count entries sorted by id
+ *     { id (long), offset (long), key length (int), table length (int) }
+ *     records: key (ElGamalKeyCodec) || g table || y table
+ * </pre>
+ * Opening maps the file and checks the header only.  A key is found by
+ * binary search in the mapped index and decoded into MPInt on its first
+ * get; decoded keys are kept, and public keys of the same modulus share
+ * one Montgomery context for their fixed-base tables.  Fixed-base tables that a public key had built when
+ * the store was written are saved with it and restored on decoding, so
+ * the key starts with its tables.  Tables that do not match the key are
+ * dropped; the key then builds its own on use.
+ */
+public class ElGamalKeyStore implements AutoCloseable {
+	private static final int MAGIC = 0x45474b53;
+	private static final int VERSION = 1;
+	private static final int HEADER = 16;
+	private static final int ENTRY = 24;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer buf;
+	private final int count;
+
+	/** decoded keys */
+	private final ConcurrentHashMap<Long, Key> keys =
+		new ConcurrentHashMap<Long, Key>();
+
+	/** modulus -> Montgomery context */
+	private final ConcurrentHashMap<MPInt, MontgomeryContext> groups =
+		new ConcurrentHashMap<MPInt, MontgomeryContext>();
+
+	/**
+	 * Opens a key store
+	 *
+	 * @param file the key store file
+	 */
+	public ElGamalKeyStore(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		long size = channel.size();
+
+		if (size > Integer.MAX_VALUE) {
+			channel.close();
+			throw new IOException("Key store too large.");
+		}
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		if (size < HEADER || buf.getInt(0) != MAGIC
+			|| buf.getInt(4) != VERSION) {
+			channel.close();
+			throw new IOException("Not a key store.");
+		}
+		count = buf.getInt(8);
+		if (count < 0 || HEADER + (long) count * ENTRY > size) {
+			channel.close();
+			throw new IOException("Illegal key store.");
+		}
+	}
+
+	/**
+	 * Writes a key store
+	 *
+	 * @param file the key store file (overwritten)
+	 * @param ids the key IDs (distinct)
+	 * @param keys ElGamalPublicKey or ElGamalPrivateKey for each ID
+	 */
+	public static void write(Path file, long[] ids, Key[] keys)
+		throws IOException {
+		int n = ids.length;
+
+		if (keys.length != n) {
+			throw new IllegalArgumentException("Key count mismatch.");
+		}
+
+		// sort by id
+		long[][] order = new long[n][];
+		for (int i = 0; i < n; i++) {
+			order[i] = new long[] { ids[i], i };
+		}
+		Arrays.sort(order, new Comparator<long[]>() {
+			public int compare(long[] u, long[] w) {
+				return Long.compare(u[0], w[0]);
+			}
+		});
+
+		byte[][] enc = new byte[n][];
+		FixedBaseTable[][] tables = new FixedBaseTable[n][];
+		long size = HEADER + (long) n * ENTRY;
+		for (int i = 0; i < n; i++) {
+			if (i > 0 && order[i][0] == order[i - 1][0]) {
+				throw new IllegalArgumentException("Duplicate key ID.");
+			}
+			Key k = keys[(int) order[i][1]];
+			if (k instanceof ElGamalPublicKey) {
+				tables[i] = ((ElGamalPublicKey) k).getTables();
+			} else if (!(k instanceof ElGamalPrivateKey)) {
+				throw new IllegalArgumentException("Key is not a ElGamal key");
+			}
+			enc[i] = k.getEncoded();
+			size += enc[i].length + tableLength(tables[i]);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Key store too large.");
+		}
+
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer out = ch.map(FileChannel.MapMode.READ_WRITE, 0,
+										  size);
+			out.putInt(MAGIC);
+			out.putInt(VERSION);
+			out.putInt(n);
+			out.putInt(0);
+
+			long off = HEADER + (long) n * ENTRY;
+			for (int i = 0; i < n; i++) {
+				out.putLong(order[i][0]);
+				out.putLong(off);
+				out.putInt(enc[i].length);
+				out.putInt(tableLength(tables[i]));
+				off += enc[i].length + tableLength(tables[i]);
+			}
+			for (int i = 0; i < n; i++) {
+				out.put(enc[i]);
+				if (tables[i] != null) {
+					tables[i][0].encode(out);
+					tables[i][1].encode(out);
+				}
+			}
+			out.force();
+		}
+	}
+
+	/**
+	 * Gets the number of keys
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the i-th key ID (ascending order)
+	 */
+	public long getId(int i) {
+		if (i < 0 || i >= count) {
+			throw new IndexOutOfBoundsException("Illegal key index.");
+		}
+		return buf.getLong(HEADER + i * ENTRY);
+	}
+
+	/**
+	 * Is there a key of the ID?
+	 */
+	public boolean contains(long id) {
+		return find(id) >= 0;
+	}
+
+	/**
+	 * Gets a key
+	 *
+	 * @param id the key ID
+	 * @return ElGamalPublicKey or ElGamalPrivateKey (null: no key)
+	 */
+	public Key getKey(long id) {
+		Key k = keys.get(id);
+
+		if (k == null) {
+			int i = find(id);
+			if (i < 0) {
+				return null;
+			}
+			k = decode(i);
+			Key prev = keys.putIfAbsent(id, k);
+			if (prev != null) {
+				k = prev;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Gets a public key
+	 *
+	 * @param id the key ID
+	 * @return the key (null: no public key)
+	 */
+	public ElGamalPublicKey getPublicKey(long id) {
+		Key k = getKey(id);
+		return (k instanceof ElGamalPublicKey) ? (ElGamalPublicKey) k : null;
+	}
+
+	/**
+	 * Gets a private key
+	 *
+	 * @param id the key ID
+	 * @return the key (null: no private key)
+	 */
+	public ElGamalPrivateKey getPrivateKey(long id) {
+		Key k = getKey(id);
+		return (k instanceof ElGamalPrivateKey) ? (ElGamalPrivateKey) k : null;
+	}
+
+	/**
+	 * Closes the file.  Keys already decoded stay usable.
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Index of the ID (binary search), or -1
+	 */
+	private int find(long id) {
+		int lo = 0;
+		int hi = count - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long v = buf.getLong(HEADER + mid * ENTRY);
+			if (v < id) {
+				lo = mid + 1;
+			} else if (v > id) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	private Key decode(int i) {
+		int e = HEADER + i * ENTRY;
+		int off = (int) buf.getLong(e + 8);
+		int keyLen = buf.getInt(e + 16);
+		int tableLen = buf.getInt(e + 20);
+
+		ByteBuffer src = buf.duplicate();
+		src.limit(off + keyLen + tableLen);
+		src.position(off);
+		if (ElGamalKeyCodec.length(src) != keyLen) {
+			throw new IllegalArgumentException("Illegal key encoding.");
+		}
+
+		// share the Montgomery context within a group (public keys only)
+		MontgomeryContext ctx = null;
+		if (ElGamalKeyCodec.type(src) == ElGamalKeyCodec.PUBLIC) {
+			int pLen = src.getShort(off + 4) & 0xffff;
+			ByteBuffer pb = src.duplicate();
+			pb.position(off + ElGamalKeyCodec.HEADER);
+			MPInt p = MPInt.fromBytes(pb, pLen);
+			ctx = groups.get(p);
+			if (ctx == null) {
+				ctx = new MontgomeryContext(p);
+				MontgomeryContext prev = groups.putIfAbsent(p, ctx);
+				if (prev != null) {
+					ctx = prev;
+				}
+			}
+		}
+
+		Key k = ElGamalKeyCodec.decode(src, ctx);
+		if (tableLen > 0 && k instanceof ElGamalPublicKey) {
+			ElGamalPublicKey pk = (ElGamalPublicKey) k;
+			int bits = pk.getExponentBits();
+			try {
+				FixedBaseTable tg = FixedBaseTable.decode(pk.getGenerator(), ctx,
+														  bits, src);
+				FixedBaseTable ty = FixedBaseTable.decode(pk.getPublic(), ctx,
+														  bits, src);
+				pk.setTables(tg, ty);
+			} catch (IllegalArgumentException ex) {
+				// rebuilt by the key (FixedBaseTable.create) on use
+			} catch (BufferUnderflowException ex) {
+				// rebuilt by the key (FixedBaseTable.create) on use
+			}
+		}
+		return k;
+	}
+
+	private static int tableLength(FixedBaseTable[] t) {
+		return (t == null) ? 0
+			: t[0].getEncodedLength() + t[1].getEncodedLength();
+	}
+}
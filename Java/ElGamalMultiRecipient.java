@@ -0,0 +1,131 @@
+/**
+ * ElGamalMultiRecipient.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import Blanclux.math.*;
+
+import java.security.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+/**
+ * ElGamal hybrid encryption to many recipients of one group (p, g)
+ * <p>
+ * The data is encrypted once with a fresh AES key.  The key is wrapped
+ * for every recipient with the same randomness r: C1 = g^r is shared and
+ * only C2_i = M * y_i^r (K xor KDF3(C1 || y_i^r) for a subgroup key, see
+ * ElGamal) differs, which is safe for ElGamal since the recipients' keys
+ * are independent (randomness reuse of reproducible schemes,
+ * Bellare-Boldyreva-Staddon).  N recipients cost one g^r and
+ * N exponentiations y_i^r.
+ * <p>
+ * Recipient i decrypts with ElGamal.decrypt_hybrid(data, len, keys[i]).
+ */
+public class ElGamalMultiRecipient {
+
+	private final ElGamalPublicKey[] keys;
+	private final MPInt p;
+	private final int cipherBlockSize;
+	private final SecureRandom rng;
+
+	/**
+	 * Constructor
+	 *
+	 * @param recipients the recipients' keys (same p and g)
+	 * @param random random generator
+	 */
+	public ElGamalMultiRecipient(ElGamalPublicKey[] recipients,
+			SecureRandom random) {
+		if (recipients == null || recipients.length == 0) {
+			throw new IllegalArgumentException("No recipient.");
+		}
+		ElGamalPublicKey k0 = recipients[0];
+
+		for (int i = 1; i < recipients.length; i++) {
+			ElGamalPublicKey k = recipients[i];
+			if (!k.getModulus().equals(k0.getModulus())
+				|| !k.getGenerator().equals(k0.getGenerator())) {
+				throw new IllegalArgumentException("Group mismatch.");
+			}
+		}
+		keys = recipients.clone();
+		p = k0.getModulus();
+		cipherBlockSize = ((p.bitLength() + 7) / 8) * 2;
+		rng = (random == null) ? new SecureRandom() : random;
+	}
+
+	/**
+	 * Gets the key block length of a recipient
+	 *
+	 * @param i the recipient index
+	 */
+	public int getKeyBlockSize(int i) {
+		return (keys[i].getSubgroupOrder() != null)
+			? cipherBlockSize / 2 + ElGamal.keyLength / 8 : cipherBlockSize;
+	}
+
+	/**
+	 * Hybrid encryption
+	 *
+	 * @param src the plain text
+	 * @param len the plain text length (byte)
+	 * @param wrappedKeys the key blocks (output, one per recipient)
+	 * @return the encrypted data (null: error)
+	 */
+	public byte[] encrypt(byte[] src, int len, byte[][] wrappedKeys) {
+		int keyLen = ElGamal.keyLength / 8;
+		int half = cipherBlockSize / 2;
+
+		if (src == null || src.length < len
+			|| wrappedKeys == null || wrappedKeys.length < keys.length) {
+			return null;
+		}
+
+		try {
+			KeyGenerator keyGen = KeyGenerator.getInstance(ElGamal.algorithm);
+			keyGen.init(ElGamal.keyLength, rng);
+			SecretKey seckey = keyGen.generateKey();
+			byte[] key = seckey.getEncoded();
+
+			Cipher cipher = Cipher.getInstance(ElGamal.opmode);
+			cipher.init(Cipher.ENCRYPT_MODE, seckey,
+						new IvParameterSpec(ElGamal.iv));
+			byte[] data = cipher.doFinal(src, 0, len);
+
+			// padding
+			byte[] in = new byte[keyLen + 1];
+			in[0] = (byte) 0x80;
+			System.arraycopy(key, 0, in, 1, keyLen);
+			MPInt m = new MPInt(1, in);
+
+			// shared r and C1 = g^r
+			MPInt r = keys[0].randomExponent(rng);
+			byte[] c1B = MPInt.toFixedBytes(keys[0].modPowGenerator(r), half);
+
+			for (int i = 0; i < keys.length; i++) {
+				MPInt s = keys[i].modPowPublic(r);
+				byte[] w = new byte[getKeyBlockSize(i)];
+				System.arraycopy(c1B, 0, w, 0, half);
+				if (keys[i].getSubgroupOrder() != null) {
+					byte[] mask = ElGamal.keyMask(c1B, 0, half, s, keyLen);
+					for (int j = 0; j < keyLen; j++) {
+						w[half + j] = (byte) (key[j] ^ mask[j]);
+					}
+				} else {
+					MPInt c2 = m.multiply(s).mod(p);
+					MPInt.toFixedBytes(c2, w, half, half);
+				}
+				wrappedKeys[i] = w;
+			}
+			return data;
+		} catch (GeneralSecurityException e) {
+			System.err.println("ElGamalMultiRecipient/encrypt error: "
+							   + e.toString());
+			return null;
+		}
+	}
+}
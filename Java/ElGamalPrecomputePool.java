@@ -0,0 +1,214 @@
+/**
+ * ElGamalPrecomputePool.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import Blanclux.math.*;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool of precomputed ElGamal encryption pairs (g^r mod p, y^r mod p)
+ * <p>
+ * Background threads fill a bounded lock-free queue while the key is
+ * idle.  While the pool is attached to the key, ElGamal.encrypt takes a
+ * pair and only computes C2 = M * y^r mod p; on an empty pool the pair is
+ * computed inline.  Every pair is used once.
+ */
+public class ElGamalPrecomputePool implements AutoCloseable {
+	/** default number of pairs */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final ElGamalPublicKey key;
+	private final int capacity;
+	private final SecureRandom rng;
+
+	private final ConcurrentLinkedQueue<MPInt[]> queue;
+	/** pairs in the queue and in production */
+	private final AtomicInteger size = new AtomicInteger();
+
+	private final Thread[] workers;
+	private volatile boolean closed;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong produced = new AtomicLong();
+	private final long startTime;
+
+	/**
+	 * Constructor (default capacity, one thread)
+	 *
+	 * @param publicKey the key
+	 * @param random random generator
+	 */
+	public ElGamalPrecomputePool(ElGamalPublicKey publicKey,
+			SecureRandom random) {
+		this(publicKey, DEFAULT_CAPACITY, 1, random);
+	}
+
+	/**
+	 * Constructor
+	 *  The pool is attached to the key until close(); a pool attached
+	 *  before is closed.
+	 *
+	 * @param publicKey the key
+	 * @param capacity the number of pairs
+	 * @param threads the number of background threads
+	 * @param random random generator
+	 */
+	public ElGamalPrecomputePool(ElGamalPublicKey publicKey, int capacity,
+			int threads, SecureRandom random) {
+		if (capacity <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("Illegal pool size.");
+		}
+		key = publicKey;
+		this.capacity = capacity;
+		rng = (random == null) ? new SecureRandom() : random;
+		queue = new ConcurrentLinkedQueue<MPInt[]>();
+		startTime = System.nanoTime();
+
+		workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			Thread t = new Thread(new Runnable() {
+				public void run() {
+					fill();
+				}
+			}, "ElGamalPrecompute-" + i);
+			t.setDaemon(true);
+			workers[i] = t;
+		}
+		ElGamalPrecomputePool prev = key.setPrecomputePool(this);
+		for (int i = 0; i < threads; i++) {
+			workers[i].start();
+		}
+		if (prev != null) {
+			prev.close();
+		}
+	}
+
+	/**
+	 * Takes a pair { g^r mod p, y^r mod p }
+	 *  (computed inline if the pool is empty)
+	 */
+	public MPInt[] take() {
+		MPInt[] pair = queue.poll();
+
+		if (pair != null) {
+			size.decrementAndGet();
+			hits.incrementAndGet();
+			wakeUp();
+			return pair;
+		}
+		misses.incrementAndGet();
+		return compute();
+	}
+
+	/**
+	 * Gets the number of pairs ready
+	 */
+	public int getSize() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of takes served from the pool
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of takes computed inline
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Gets the number of pairs produced by the background threads
+	 */
+	public long getProduced() {
+		return produced.get();
+	}
+
+	/**
+	 * Gets the fill rate (pairs per second since construction)
+	 */
+	public double getFillRate() {
+		long t = System.nanoTime() - startTime;
+		return (t > 0) ? produced.get() * 1e9 / t : 0.0;
+	}
+
+	/**
+	 * Stops the background threads and detaches the pool from the key.
+	 *  Waits until the threads (which finish the pair in production) have
+	 *  ended, so no pair is left in the queue.
+	 */
+	public void close() {
+		closed = true;
+		key.removePrecomputePool(this);
+		boolean interrupted = false;
+		for (int i = 0; i < workers.length; i++) {
+			Thread t = workers[i];
+			LockSupport.unpark(t);
+			while (t.isAlive()) {
+				try {
+					t.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		queue.clear();
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Background thread: fills the queue up to the capacity.
+	 */
+	private void fill() {
+		while (!closed) {
+			int n = size.get();
+			if (n >= capacity) {
+				LockSupport.park(this);
+				continue;
+			}
+			if (!size.compareAndSet(n, n + 1)) {
+				continue;
+			}
+			MPInt[] pair = compute();
+			if (closed) {
+				break;
+			}
+			queue.offer(pair);
+			produced.incrementAndGet();
+		}
+	}
+
+	private MPInt[] compute() {
+		MPInt r = key.randomExponent(rng);
+
+		return new MPInt[] { key.modPowGenerator(r), key.modPowPublic(r) };
+	}
+
+	private void wakeUp() {
+		for (int i = 0; i < workers.length; i++) {
+			LockSupport.unpark(workers[i]);
+		}
+	}
+}
@@ -7,6 +7,7 @@ package Blanclux.crypto.cipher;
 
 import Blanclux.math.*;
 
+import java.nio.ByteBuffer;
 import java.security.PrivateKey;
 
 /**
@@ -28,6 +29,12 @@ public class ElGamalPrivateKey implements PrivateKey {
 	/** private key */
 	private MPInt x;
 
+	/** order of g (null: unknown) */
+	private MPInt q;
+
+	/** decryption exponent: q - x mod q, p - 1 - x, or 0 for c^x inverted */
+	private transient MPInt xInv;
+
 	/**
 	 * ElGamalPrivateKey
 	 */
@@ -39,6 +46,21 @@ public class ElGamalPrivateKey implements PrivateKey {
 		x = secretKey;
 	}
 
+	/**
+	 * ElGamalPrivateKey (FFC parameters)
+	 *
+	 * @param modulus prime p
+	 * @param generator generator g of the subgroup of order q
+	 * @param publicKey y = g^x mod p
+	 * @param secretKey x
+	 * @param order prime q (q | p - 1)
+	 */
+	public ElGamalPrivateKey(MPInt modulus, MPInt generator,
+							 MPInt publicKey, MPInt secretKey, MPInt order) {
+		this(modulus, generator, publicKey, secretKey);
+		q = order;
+	}
+
 	/**
 	 * Gets an algorithm name
 	 */
@@ -47,17 +69,33 @@ public class ElGamalPrivateKey implements PrivateKey {
 	}
 
 	/**
-	 * Gets an encoded key
+	 * Gets an encoded key (fixed-layout binary, see ElGamalKeyCodec)
 	 */
 	public byte[] getEncoded() {
-		return toString().getBytes();
+		return ElGamalKeyCodec.encode(p, g, y, q, x);
 	}
 
 	/**
 	 * Gets an encoded format
 	 */
 	public String getFormat() {
-		return "String";
+		return ElGamalKeyCodec.FORMAT;
+	}
+
+	/**
+	 * Decodes a private key (getEncoded)
+	 *
+	 * @param encoded the encoded key
+	 * @return the key
+	 * @throws IllegalArgumentException illegal encoding
+	 */
+	public static ElGamalPrivateKey decode(byte[] encoded) {
+		ByteBuffer src = ByteBuffer.wrap(encoded);
+
+		if (ElGamalKeyCodec.type(src) != ElGamalKeyCodec.PRIVATE) {
+			throw new IllegalArgumentException("Not a private key.");
+		}
+		return (ElGamalPrivateKey) ElGamalKeyCodec.decode(src, null);
 	}
 
 	/**
@@ -74,6 +112,44 @@ public class ElGamalPrivateKey implements PrivateKey {
 		return p;
 	}
 
+	/**
+	 * Gets an order of the generator (null: unknown)
+	 */
+	public MPInt getSubgroupOrder() {
+		return q;
+	}
+
+	/**
+	 * c^(-x) mod p
+	 * <p>
+	 * One positive exponentiation with q - (x mod q) when the subgroup
+	 * order is known (c must lie in the subgroup, as g^r does).  Otherwise
+	 * p - 1 - x is used for a full-length x, and c^x followed by one
+	 * inversion for a short x.
+	 *
+	 * @param c the value (C1 of a cipher text)
+	 * @return c^(-x) mod p
+	 */
+	public MPInt modPowInverse(MPInt c) {
+		MPInt e = xInv;
+
+		if (e == null) {
+			if (q != null) {
+				e = q.subtract(x.mod(q));
+			} else if (x.bitLength() > p.bitLength() / 2) {
+				MPInt p_1 = p.subtract(MPInt.ONE);
+				e = p_1.subtract(x.mod(p_1));
+			} else {
+				e = MPInt.ZERO;
+			}
+			xInv = e;
+		}
+		if (e.signum() == 0) {
+			return MPInt.modInverse(c.modPow(x, p), p);
+		}
+		return c.modPow(e, p);
+	}
+
 	/**
 	 * Gets a public key
 	 */
@@ -96,6 +172,9 @@ public class ElGamalPrivateKey implements PrivateKey {
 				+ getGenerator().toString(16) + "\n" + "y = "
 				+ getPublic().toString(16) + "\n" + "x = "
 				+ getPrivate().toString(16) + "\n";
+		if (q != null) {
+			out += "q = " + q.toString(16) + "\n";
+		}
 
 		return out;
 	}
@@ -7,7 +7,12 @@ package Blanclux.crypto.cipher;
 
 import Blanclux.math.*;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
 
 /**
  * ElGamalPublicKey
@@ -22,9 +27,45 @@ public class ElGamalPublicKey implements PublicKey {
 	/** generator */
 	private MPInt g;
 
+	/** Montgomery context of p (created on first use) */
+	private transient MontgomeryContext mont;
+
+	/** fixed-base tables of g and y (created after TABLE_THRESHOLD uses) */
+	private transient volatile FixedBaseTable gTable;
+	private transient volatile FixedBaseTable yTable;
+
+	/** number of exponentiations before the tables are built */
+	private static final int TABLE_THRESHOLD = 32;
+
+	/** memory bound of one fixed-base table (bytes) */
+	private static volatile long tableMemoryLimit = 1024 * 1024;
+
+	/** memory bound of the fixed-base tables of all keys (bytes) */
+	private static volatile long tableMemoryBudget = 64L * 1024 * 1024;
+
+	/** keys holding tables, oldest first (guarded by itself) */
+	private static final ArrayDeque<TableOwner> tableOwners =
+		new ArrayDeque<TableOwner>();
+	private static final ReferenceQueue<ElGamalPublicKey> releasedKeys =
+		new ReferenceQueue<ElGamalPublicKey>();
+	private static long tableMemoryUsed;
+
+	/** exponentiation counter */
+	private transient volatile int useCount;
+
+	/** entry of this key in tableOwners (null: no tables, guarded by
+	 *  tableOwners) */
+	private transient TableOwner tableOwner;
+
+	/** pool of precomputed (g^r, y^r) pairs */
+	private transient volatile ElGamalPrecomputePool pool;
+
 	/** public key */
 	private MPInt y;
 
+	/** order of g (null: unknown) */
+	private MPInt q;
+
 	/**
 	 * ElGamalPublicKey
 	 */
@@ -34,6 +75,20 @@ public class ElGamalPublicKey implements PublicKey {
 		y = publicKey;
 	}
 
+	/**
+	 * ElGamalPublicKey (FFC parameters)
+	 *
+	 * @param modulus prime p
+	 * @param generator generator g of the subgroup of order q
+	 * @param publicKey y = g^x mod p
+	 * @param order prime q (q | p - 1)
+	 */
+	public ElGamalPublicKey(MPInt modulus, MPInt generator, MPInt publicKey,
+							MPInt order) {
+		this(modulus, generator, publicKey);
+		q = order;
+	}
+
 	/**
 	 * Gets an algorithm name
 	 */
@@ -42,17 +97,33 @@ public class ElGamalPublicKey implements PublicKey {
 	}
 
 	/**
-	 * Gets an encoded key
+	 * Gets an encoded key (fixed-layout binary, see ElGamalKeyCodec)
 	 */
 	public byte[] getEncoded() {
-		return toString().getBytes();
+		return ElGamalKeyCodec.encode(p, g, y, q, null);
 	}
 
 	/**
 	 * Gets an encoded format
 	 */
 	public String getFormat() {
-		return "String";
+		return ElGamalKeyCodec.FORMAT;
+	}
+
+	/**
+	 * Decodes a public key (getEncoded)
+	 *
+	 * @param encoded the encoded key
+	 * @return the key
+	 * @throws IllegalArgumentException illegal encoding
+	 */
+	public static ElGamalPublicKey decode(byte[] encoded) {
+		ByteBuffer src = ByteBuffer.wrap(encoded);
+
+		if (ElGamalKeyCodec.type(src) != ElGamalKeyCodec.PUBLIC) {
+			throw new IllegalArgumentException("Not a public key.");
+		}
+		return (ElGamalPublicKey) ElGamalKeyCodec.decode(src, null);
 	}
 
 	/**
@@ -69,6 +140,255 @@ public class ElGamalPublicKey implements PublicKey {
 		return p;
 	}
 
+	/**
+	 * Gets an order of the generator (null: unknown)
+	 */
+	public MPInt getSubgroupOrder() {
+		return q;
+	}
+
+	/**
+	 * Gets a Montgomery context of the modulus
+	 */
+	public MontgomeryContext getMontgomeryContext() {
+		if (mont == null) {
+			mont = new MontgomeryContext(p);
+		}
+		return mont;
+	}
+
+	void setMontgomeryContext(MontgomeryContext ctx) {
+		mont = ctx;
+	}
+
+	/**
+	 * Sets the memory bound of one fixed-base table (bytes)
+	 * (0: no table)
+	 */
+	public static void setTableMemoryLimit(long bytes) {
+		tableMemoryLimit = bytes;
+	}
+
+	/**
+	 * Sets the memory bound of the fixed-base tables of all keys (bytes)
+	 * When a key builds its tables beyond the bound, the tables of the
+	 * keys that built theirs first are evicted (evictTables).
+	 */
+	public static void setTableMemoryBudget(long bytes) {
+		tableMemoryBudget = bytes;
+	}
+
+	/**
+	 * Gets the memory size of the fixed-base tables of all keys (bytes)
+	 */
+	public static long getTableMemoryUsed() {
+		synchronized (tableOwners) {
+			drainReleased();
+			return tableMemoryUsed;
+		}
+	}
+
+	/**
+	 * g^r mod p
+	 * The fixed-base table is used once the key has been used
+	 * TABLE_THRESHOLD times.
+	 */
+	public MPInt modPowGenerator(MPInt r) {
+		FixedBaseTable t = gTable;
+		if (t == null) {
+			countUse();
+			t = gTable;
+		}
+		return (t != null) ? t.modPow(r) : g.modPow(r, p);
+	}
+
+	/**
+	 * y^r mod p
+	 */
+	public MPInt modPowPublic(MPInt r) {
+		FixedBaseTable t = yTable;
+		return (t != null) ? t.modPow(r) : y.modPow(r, p);
+	}
+
+	/**
+	 * Random exponent r (0 < r < q, or 0 <= r < p - 1)
+	 */
+	MPInt randomExponent(SecureRandom rng) {
+		MPInt r;
+
+		if (q != null) {
+			r = MPInt.random(rng, q.subtract(MPInt.ONE)).add(MPInt.ONE);
+		} else {
+			MPInt p_1 = p.subtract(MPInt.ONE);
+
+			do {
+				r = new MPInt(p.bitLength() - 1, rng);
+			} while ((r.compareTo(p_1)) >= 0);
+		}
+		return r;
+	}
+
+	/**
+	 * Gets the pool of precomputed pairs (null: none)
+	 */
+	public ElGamalPrecomputePool getPrecomputePool() {
+		return pool;
+	}
+
+	/**
+	 * Attaches a pool and returns the pool it replaces (null: none)
+	 */
+	synchronized ElGamalPrecomputePool setPrecomputePool(
+			ElGamalPrecomputePool pool) {
+		ElGamalPrecomputePool prev = this.pool;
+		this.pool = pool;
+		return prev;
+	}
+
+	/**
+	 * Detaches the pool if it is still attached
+	 */
+	synchronized void removePrecomputePool(ElGamalPrecomputePool pool) {
+		if (this.pool == pool) {
+			this.pool = null;
+		}
+	}
+
+	/**
+	 * Releases the fixed-base tables.
+	 * They are built again after TABLE_THRESHOLD further uses.
+	 */
+	public synchronized void evictTables() {
+		synchronized (tableOwners) {
+			TableOwner o = tableOwner;
+			if (o != null && tableOwners.remove(o)) {
+				tableMemoryUsed -= o.size;
+			}
+			dropTables();
+		}
+	}
+
+	/**
+	 * Drops the tables (tableOwners held; the key itself is not locked)
+	 */
+	private void dropTables() {
+		tableOwner = null;
+		gTable = null;
+		yTable = null;
+		useCount = 0;
+	}
+
+	/**
+	 * Gets the fixed-base tables { g, y } (null: not built)
+	 */
+	FixedBaseTable[] getTables() {
+		FixedBaseTable tg = gTable;
+		FixedBaseTable ty = yTable;
+		return (tg != null && ty != null) ? new FixedBaseTable[] { tg, ty }
+				: null;
+	}
+
+	/**
+	 * Gets the exponent length of the fixed-base tables (bits)
+	 */
+	int getExponentBits() {
+		return (q != null) ? q.bitLength() : p.bitLength();
+	}
+
+	/**
+	 * Sets prebuilt fixed-base tables of g and y
+	 */
+	synchronized void setTables(FixedBaseTable tg, FixedBaseTable ty) {
+		installTables(tg, ty);
+	}
+
+	/**
+	 * Gets the memory size of the fixed-base tables (bytes)
+	 */
+	public long getTableMemorySize() {
+		FixedBaseTable tg = gTable;
+		FixedBaseTable ty = yTable;
+		return ((tg != null) ? tg.getMemorySize() : 0)
+				+ ((ty != null) ? ty.getMemorySize() : 0);
+	}
+
+	private synchronized void countUse() {
+		if (gTable != null || ++useCount < TABLE_THRESHOLD
+				|| tableMemoryLimit <= 0) {
+			return;
+		}
+		long limit = Math.min(tableMemoryLimit, tableMemoryBudget / 2);
+		MontgomeryContext ctx = getMontgomeryContext();
+		int bits = getExponentBits();
+		FixedBaseTable ty = FixedBaseTable.create(y, ctx, bits, limit);
+		FixedBaseTable tg = FixedBaseTable.create(g, ctx, bits, limit);
+		if (tg != null && ty != null) {
+			installTables(tg, ty);
+		}
+	}
+
+	/**
+	 * Sets the tables if they fit into the budget, evicting the tables of
+	 * other keys (oldest first).
+	 */
+	private void installTables(FixedBaseTable tg, FixedBaseTable ty) {
+		long size = tg.getMemorySize() + ty.getMemorySize();
+
+		synchronized (tableOwners) {
+			drainReleased();
+			TableOwner old = tableOwner;
+			if (old != null && tableOwners.remove(old)) {
+				tableMemoryUsed -= old.size;
+			}
+			long budget = tableMemoryBudget;
+			if (size > budget) {
+				dropTables();
+				return;
+			}
+			while (tableMemoryUsed + size > budget) {
+				TableOwner v = tableOwners.poll();
+				tableMemoryUsed -= v.size;
+				ElGamalPublicKey k = v.get();
+				if (k != null && k.tableOwner == v) {
+					k.dropTables();
+				}
+			}
+			TableOwner o = new TableOwner(this, size);
+			tableOwners.add(o);
+			tableMemoryUsed += size;
+			tableOwner = o;
+			yTable = ty;
+			gTable = tg;
+		}
+	}
+
+	/**
+	 * Releases the accounting of keys collected with their tables
+	 * (tableOwners held)
+	 */
+	private static void drainReleased() {
+		Object r;
+		while ((r = releasedKeys.poll()) != null) {
+			TableOwner o = (TableOwner) r;
+			if (tableOwners.remove(o)) {
+				tableMemoryUsed -= o.size;
+			}
+		}
+	}
+
+	/**
+	 * Table accounting entry of a key
+	 */
+	private static final class TableOwner
+		extends WeakReference<ElGamalPublicKey> {
+		final long size;
+
+		TableOwner(ElGamalPublicKey key, long size) {
+			super(key, releasedKeys);
+			this.size = size;
+		}
+	}
+
 	/**
 	 * Gets a public key
 	 */
@@ -83,6 +403,9 @@ public class ElGamalPublicKey implements PublicKey {
 		String out = "p = " + getModulus().toString(16) + "\n" + "g = "
 				+ getGenerator().toString(16) + "\n" + "y = "
 				+ getPublic().toString(16) + "\n";
+		if (q != null) {
+			out += "q = " + q.toString(16) + "\n";
+		}
 		return out;
 	}
 }
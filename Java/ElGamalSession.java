@@ -0,0 +1,191 @@
+/**
+ * ElGamalSession.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import java.security.*;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+/**
+ * ElGamal hybrid session (encryption side)
+ * <p>
+ * One AES key is wrapped with ElGamal and reused for many messages, each
+ * with its own nonce, until the message count or byte limit is reached;
+ * then a new key is wrapped.  The public-key cost is paid once per
+ * session instead of once per message.
+ * <p>
+ * Message format:
+ *  encapsulation (getKeyBlockSize() bytes) || nonce (12 bytes)
+ *  || AES/GCM cipher text and tag
+ * The encapsulation and the nonce are authenticated as AAD.
+ */
+public class ElGamalSession {
+	/** secret cipher algorithm */
+	static final String ALGORITHM = "AES";
+	/** cipher mode of operation */
+	static final String OPMODE = "AES/GCM/NoPadding";
+	/** key length (bit) */
+	static final int KEY_LENGTH = 128;
+	/** nonce length (byte) */
+	static final int NONCE_LENGTH = 12;
+	/** tag length (bit) */
+	static final int TAG_LENGTH = 128;
+
+	/** default limits of one session key */
+	public static final long DEFAULT_MAX_MESSAGES = 1L << 32;
+	public static final long DEFAULT_MAX_BYTES = 1L << 36;
+
+	private final ElGamal elgamal;
+	private final SecureRandom rng;
+	private final long maxMessages;
+	private final long maxBytes;
+
+	private Cipher cipher;
+
+	/** current session */
+	private SecretKey key;
+	private byte[] encap;
+	private byte[] salt = new byte[4];
+	private long messages;
+	private long bytes;
+	private long sessions;
+
+	/**
+	 * Constructor (default limits)
+	 *
+	 * @param publicKey the recipient's key
+	 * @param random random generator
+	 */
+	public ElGamalSession(ElGamalPublicKey publicKey, SecureRandom random)
+		throws InvalidKeyException {
+		this(publicKey, random, DEFAULT_MAX_MESSAGES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param publicKey the recipient's key
+	 * @param random random generator
+	 * @param maxMessages the number of messages per session key
+	 * @param maxBytes the number of plain text bytes per session key
+	 */
+	public ElGamalSession(ElGamalPublicKey publicKey, SecureRandom random,
+			long maxMessages, long maxBytes) throws InvalidKeyException {
+		if (maxMessages <= 0 || maxBytes <= 0) {
+			throw new IllegalArgumentException("Illegal session limit.");
+		}
+		rng = (random == null) ? new SecureRandom() : random;
+		elgamal = new ElGamal();
+		elgamal.initEncrypt(publicKey, rng);
+		this.maxMessages = maxMessages;
+		this.maxBytes = maxBytes;
+		try {
+			cipher = Cipher.getInstance(OPMODE);
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamalSession: " + e.toString());
+		} catch (NoSuchPaddingException e) {
+			System.err.println("ElGamalSession: " + e.toString());
+		}
+	}
+
+	/**
+	 * Gets the length of the encapsulation (bytes)
+	 */
+	public int getKeyBlockSize() {
+		return elgamal.getKeyBlockSize(KEY_LENGTH / 8);
+	}
+
+	/**
+	 * Gets the number of session keys wrapped so far
+	 */
+	public synchronized long getSessionCount() {
+		return sessions;
+	}
+
+	/**
+	 * Starts a new session key.
+	 */
+	public synchronized void rekey() {
+		try {
+			KeyGenerator keyGen = KeyGenerator.getInstance(ALGORITHM);
+			keyGen.init(KEY_LENGTH, rng);
+			SecretKey k = keyGen.generateKey();
+			byte[] kb = k.getEncoded();
+
+			byte[] c = new byte[elgamal.getKeyBlockSize(kb.length)];
+			elgamal.wrapKey(kb, c, 0, rng);
+
+			key = k;
+			encap = c;
+			rng.nextBytes(salt);
+			messages = 0;
+			bytes = 0;
+			sessions++;
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamalSession/rekey error: " + e.toString());
+		}
+	}
+
+	/**
+	 * Encryption
+	 *
+	 * @param src the plain text
+	 * @param off the offset
+	 * @param len the plain text length
+	 * @return the message (null: error)
+	 */
+	public synchronized byte[] encrypt(byte[] src, int off, int len) {
+		if (key == null || messages >= maxMessages || bytes + len > maxBytes) {
+			rekey();
+		}
+		if (key == null) {
+			return null;
+		}
+
+		// nonce = salt || message counter
+		byte[] nonce = new byte[NONCE_LENGTH];
+		System.arraycopy(salt, 0, nonce, 0, salt.length);
+		long n = messages;
+		for (int i = NONCE_LENGTH - 1; i >= salt.length; i--) {
+			nonce[i] = (byte) n;
+			n >>>= 8;
+		}
+
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, key,
+						new GCMParameterSpec(TAG_LENGTH, nonce));
+			int head = encap.length + NONCE_LENGTH;
+			byte[] dest = new byte[head + cipher.getOutputSize(len)];
+			System.arraycopy(encap, 0, dest, 0, encap.length);
+			System.arraycopy(nonce, 0, dest, encap.length, NONCE_LENGTH);
+			cipher.updateAAD(dest, 0, head);
+			int clen = cipher.doFinal(src, off, len, dest, head);
+
+			messages++;
+			bytes += len;
+			if (head + clen == dest.length) {
+				return dest;
+			}
+			byte[] ret = new byte[head + clen];
+			System.arraycopy(dest, 0, ret, 0, ret.length);
+			return ret;
+		} catch (GeneralSecurityException e) {
+			System.err.println("ElGamalSession/encrypt error: " + e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Encryption
+	 *
+	 * @param src the plain text
+	 * @return the message (null: error)
+	 */
+	public byte[] encrypt(byte[] src) {
+		return encrypt(src, 0, src.length);
+	}
+}
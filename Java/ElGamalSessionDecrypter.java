@@ -0,0 +1,159 @@
+/**
+ * ElGamalSessionDecrypter.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto.cipher;
+
+import java.nio.ByteBuffer;
+import java.security.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.*;
+import javax.crypto.spec.*;
+
+/**
+ * ElGamal hybrid session (decryption side)
+ * <p>
+ * Decrypts the messages of ElGamalSession.  Unwrapped session keys are
+ * kept in a bounded LRU cache keyed by the encapsulation bytes, so only
+ * the first message of a session costs an ElGamal decryption.
+ */
+public class ElGamalSessionDecrypter {
+	/** default number of cached session keys */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
+	private final ElGamal elgamal;
+	private final int blockSize;
+
+	private Cipher cipher;
+
+	/** encapsulation -> session key (access order) */
+	private final Map<ByteBuffer, SecretKey> cache;
+
+	private long hits;
+	private long misses;
+
+	/**
+	 * Constructor (default cache size)
+	 *
+	 * @param privateKey the private key
+	 */
+	public ElGamalSessionDecrypter(ElGamalPrivateKey privateKey)
+		throws InvalidKeyException {
+		this(privateKey, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param privateKey the private key
+	 * @param cacheSize the number of cached session keys
+	 */
+	public ElGamalSessionDecrypter(ElGamalPrivateKey privateKey,
+			final int cacheSize) throws InvalidKeyException {
+		elgamal = new ElGamal();
+		elgamal.initDecrypt(privateKey);
+		blockSize = elgamal.getKeyBlockSize(ElGamalSession.KEY_LENGTH / 8);
+		cache = new LinkedHashMap<ByteBuffer, SecretKey>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(
+					Map.Entry<ByteBuffer, SecretKey> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		try {
+			cipher = Cipher.getInstance(ElGamalSession.OPMODE);
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamalSessionDecrypter: " + e.toString());
+		} catch (NoSuchPaddingException e) {
+			System.err.println("ElGamalSessionDecrypter: " + e.toString());
+		}
+	}
+
+	/**
+	 * Gets the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of cache misses (ElGamal decryptions)
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Decryption
+	 *
+	 * @param src the message
+	 * @param off the offset
+	 * @param len the message length
+	 * @return the plain text (null: error or authentication failure)
+	 */
+	public synchronized byte[] decrypt(byte[] src, int off, int len) {
+		int head = blockSize + ElGamalSession.NONCE_LENGTH;
+
+		if (src == null || len < head + ElGamalSession.TAG_LENGTH / 8) {
+			return null;
+		}
+		SecretKey key = unwrap(src, off);
+		if (key == null) {
+			return null;
+		}
+
+		try {
+			cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(
+					ElGamalSession.TAG_LENGTH, src, off + blockSize,
+					ElGamalSession.NONCE_LENGTH));
+			cipher.updateAAD(src, off, head);
+			return cipher.doFinal(src, off + head, len - head);
+		} catch (GeneralSecurityException e) {
+			System.err.println("ElGamalSessionDecrypter/decrypt error: "
+							   + e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Decryption
+	 *
+	 * @param src the message
+	 * @return the plain text (null: error or authentication failure)
+	 */
+	public byte[] decrypt(byte[] src) {
+		return decrypt(src, 0, src.length);
+	}
+
+	private SecretKey unwrap(byte[] src, int off) {
+		byte[] c = new byte[blockSize];
+		System.arraycopy(src, off, c, 0, blockSize);
+		ByteBuffer id = ByteBuffer.wrap(c);
+
+		SecretKey key = cache.get(id);
+		if (key != null) {
+			hits++;
+			return key;
+		}
+		misses++;
+
+		byte[] kb;
+		try {
+			kb = elgamal.unwrapKey(c, 0, ElGamalSession.KEY_LENGTH / 8);
+		} catch (NoSuchAlgorithmException e) {
+			System.err.println("ElGamalSessionDecrypter/unwrap error: "
+							   + e.toString());
+			return null;
+		}
+		if (kb == null) {
+			return null;
+		}
+		key = new SecretKeySpec(kb, ElGamalSession.ALGORITHM);
+		cache.put(id, key);
+		return key;
+	}
+}
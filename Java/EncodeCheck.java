@@ -0,0 +1,92 @@
+/**
+ * EncodeCheck.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.tools;
+
+import java.security.*;
+import java.util.Arrays;
+
+import Blanclux.crypto.*;
+import Blanclux.crypto.encode.*;
+
+/**
+ * MessageEncode self check
+ *  EME1 round trips through an EncoderPool (pooled and per-thread
+ *  objects), against an EME1 object set up directly
+ */
+public class EncodeCheck {
+	private static int count = 100;
+
+	private static int failed = 0;
+
+	/**
+	 * Usage : [count]
+	 */
+	public static void main(String[] args) throws Exception {
+
+		if (args.length >= 1) {
+			count = Integer.parseInt(args[0]);
+		}
+		System.out.println("*** MessageEncode Check (loop: " + count + ") ***");
+
+		final SecureRandom rng = new SecureRandom();
+		EncoderPool pool = new EncoderPool("EME1", new EncoderPool.Initializer() {
+			public void init(MessageEncode e) throws NoSuchAlgorithmException {
+				((EME1) e).init(MessageDigest.getInstance("SHA-256"),
+								new MGF1(MessageDigest.getInstance("SHA-256")),
+								rng);
+			}
+		}, 4);
+
+		EME1 ref = new EME1();
+		ref.init(MessageDigest.getInstance("SHA-256"),
+				 new MGF1(MessageDigest.getInstance("SHA-256")), rng);
+
+		byte[] label = "label".getBytes();
+		boolean pooled = true;
+		boolean local = true;
+		for (int i = 0; i < count; i++) {
+			byte[] msg = new byte[i % 150];
+			rng.nextBytes(msg);
+
+			// pooled object: encode, release, decode with another borrow
+			MessageEncode e = pool.acquire();
+			e.init(2048);
+			e.setParameter(label);
+			byte[] em = e.encode(msg);
+			pool.release(e);
+			e = pool.acquire();
+			e.setParameter(label);
+			pooled &= Arrays.equals(msg, e.decode(em));
+			pool.release(e);
+
+			ref.setParameter(label);
+			pooled &= Arrays.equals(msg, ref.decode(em));
+
+			// per-thread object
+			e = pool.local();
+			e.init(2048);
+			e.setParameter(label);
+			em = e.encode(msg);
+			e = pool.local();
+			e.setParameter(label);
+			local &= Arrays.equals(msg, e.decode(em));
+		}
+		check("EME1 pooled", pooled && pool.getIdleCount() > 0);
+		check("EME1 local", local);
+
+		System.out.println((failed == 0) ? "\nall OK" : "\n" + failed + " NG");
+		if (failed != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static void check(String name, boolean ok) {
+		System.out.println("  " + name + " : " + (ok ? "OK" : "NG"));
+		if (!ok) {
+			failed++;
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * EncoderPool.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.crypto;
+
+import java.security.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of MessageEncode objects of one algorithm
+ * <p>
+ * MessageEncode objects hold per-message state (digest, encoded length,
+ * parameter) and must not be shared between threads.  The pool hands
+ * out one object per borrower, each with its own MessageDigest, and
+ * resets it on return, so the reflective construction and the digest
+ * lookup are paid once per pooled object instead of once per message.
+ * <pre>
+ *  MessageEncode mgf = pool.acquire();
+ *  try {
+ *      mgf.init(len);
+ *      mask = mgf.encode(seed);
+ *  } finally {
+ *      pool.release(mgf);
+ *  }
+ * </pre>
+ * local() gives a per-thread object instead.
+ * <p>
+ * Objects that need more than a digest (the MGF, KDF, random generator
+ * or seed length of EME1/EME2/EME3) are wired by an Initializer, which
+ * runs once for every object the pool creates:
+ * <pre>
+ *  EncoderPool pool = new EncoderPool("EME1", new EncoderPool.Initializer() {
+ *      public void init(MessageEncode e) throws NoSuchAlgorithmException {
+ *          ((EME1) e).init(MessageDigest.getInstance("SHA-256"),
+ *                          new MGF1(MessageDigest.getInstance("SHA-256")),
+ *                          rng);
+ *      }
+ *  }, EncoderPool.DEFAULT_MAX_IDLE);
+ * </pre>
+ * Objects set by the Initializer are kept by reset(), so they must not be
+ * shared between pooled objects (one MGF1 per EME1).
+ */
+public final class EncoderPool {
+	/** default number of idle objects kept */
+	public static final int DEFAULT_MAX_IDLE = 64;
+
+	/**
+	 * Initialization of a new pooled object
+	 */
+	public interface Initializer {
+		/**
+		 * Initializes an object created by the pool
+		 *
+		 * @param e the new MessageEncode object
+		 */
+		void init(MessageEncode e) throws NoSuchAlgorithmException;
+	}
+
+	private final String algorithm;
+	private final String digestAlgorithm;
+	private final Initializer initializer;
+	private final int maxIdle;
+
+	private final ConcurrentLinkedQueue<MessageEncode> idle =
+		new ConcurrentLinkedQueue<MessageEncode>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+
+	private final ThreadLocal<MessageEncode> local =
+		new ThreadLocal<MessageEncode>();
+
+	/**
+	 * Constructor (default digest of the algorithm)
+	 *
+	 * @param algorithm the MessageEncode algorithm (EME1, MGF1, KDF3, ...)
+	 */
+	public EncoderPool(String algorithm) throws NoSuchAlgorithmException {
+		this(algorithm, null, null, DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param algorithm the MessageEncode algorithm (EME1, MGF1, KDF3, ...)
+	 * @param digestAlgorithm the MessageDigest algorithm of every object
+	 *        (null: default of the algorithm)
+	 * @param maxIdle the number of idle objects kept
+	 */
+	public EncoderPool(String algorithm, String digestAlgorithm, int maxIdle)
+		throws NoSuchAlgorithmException {
+		this(algorithm, digestAlgorithm, null, maxIdle);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param algorithm the MessageEncode algorithm (EME1, MGF1, KDF3, ...)
+	 * @param initializer run once for every object created
+	 * @param maxIdle the number of idle objects kept
+	 */
+	public EncoderPool(String algorithm, Initializer initializer, int maxIdle)
+		throws NoSuchAlgorithmException {
+		this(algorithm, null, initializer, maxIdle);
+	}
+
+	private EncoderPool(String algorithm, String digestAlgorithm,
+			Initializer initializer, int maxIdle)
+		throws NoSuchAlgorithmException {
+		if (maxIdle < 0) {
+			throw new IllegalArgumentException("Illegal pool size.");
+		}
+		this.algorithm = algorithm;
+		this.digestAlgorithm = digestAlgorithm;
+		this.initializer = initializer;
+		this.maxIdle = maxIdle;
+
+		// fail early on an unknown name
+		release(create());
+	}
+
+	/**
+	 * Gets the algorithm name
+	 */
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	/**
+	 * Gets the number of idle objects
+	 */
+	public int getIdleCount() {
+		return idleCount.get();
+	}
+
+	/**
+	 * Borrows an object (created if none is idle)
+	 *
+	 * @return the MessageEncode object
+	 */
+	public MessageEncode acquire() throws NoSuchAlgorithmException {
+		MessageEncode e = idle.poll();
+
+		if (e != null) {
+			idleCount.decrementAndGet();
+			return e;
+		}
+		return create();
+	}
+
+	/**
+	 * Returns an object to the pool.  The object is reset and must not be
+	 * used by the caller afterwards.
+	 *
+	 * @param e the MessageEncode object from acquire()
+	 */
+	public void release(MessageEncode e) {
+		if (e == null) {
+			return;
+		}
+		e.reset();
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(e);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Gets the object of the current thread.  The per-message state is
+	 * reset on every call.
+	 *
+	 * @return the MessageEncode object of this thread
+	 */
+	public MessageEncode local() throws NoSuchAlgorithmException {
+		MessageEncode e = local.get();
+
+		if (e == null) {
+			e = create();
+			local.set(e);
+		} else {
+			e.reset();
+		}
+		return e;
+	}
+
+	private MessageEncode create() throws NoSuchAlgorithmException {
+		MessageEncode e = MessageEncode.getInstance(algorithm);
+
+		if (digestAlgorithm != null) {
+			e.init(MessageDigest.getInstance(digestAlgorithm));
+		}
+		if (initializer != null) {
+			initializer.init(e);
+		}
+		return e;
+	}
+}
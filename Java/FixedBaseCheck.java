@@ -0,0 +1,97 @@
+/**
+ * FixedBaseCheck.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.tools;
+
+import java.security.SecureRandom;
+
+import Blanclux.math.*;
+
+/**
+ * FixedBaseTable self check
+ *  comb exponentiations for several (expBits, h, v) against MPInt.modPow,
+ *  and rejection of parameters whose last block starts beyond its row
+ */
+public class FixedBaseCheck {
+	private static int modLen = 1024;
+	private static int count = 20;
+
+	/** { expBits, h, v } */
+	private static final int[][] PARAMS = {
+		{ 160, 1, 1 }, { 160, 4, 2 }, { 160, 6, 3 }, { 160, 8, 4 },
+		{ 256, 5, 7 }, { 20, 8, 2 }, { 1023, 12, 11 },
+	};
+
+	private static int failed = 0;
+
+	/**
+	 * Usage : [modLength [count]]
+	 */
+	public static void main(String[] args) {
+
+		if (args.length >= 1) {
+			modLen = Integer.parseInt(args[0]);
+		}
+		if (args.length >= 2) {
+			count = Integer.parseInt(args[1]);
+		}
+		System.out.println("*** FixedBaseTable Check (modulus: " + modLen
+						   + " bits, loop: " + count + ") ***");
+
+		SecureRandom rng = new SecureRandom();
+		MPInt p = new MPInt(modLen, rng).setBit(modLen - 1).setBit(0);
+		MontgomeryContext ctx = new MontgomeryContext(p);
+		MPInt g = MPInt.random(rng, p);
+
+		for (int i = 0; i < PARAMS.length; i++) {
+			int bits = PARAMS[i][0];
+			FixedBaseTable t = new FixedBaseTable(g, ctx, bits, PARAMS[i][1],
+												  PARAMS[i][2]);
+			check("expBits " + bits + ", h " + PARAMS[i][1] + ", v "
+				  + PARAMS[i][2], doCheck(t, g, p, bits, rng));
+		}
+
+		FixedBaseTable t = FixedBaseTable.create(g, ctx, 160, 1 << 20);
+		check("create (160 bits, 1MB)", doCheck(t, g, p, 160, rng));
+
+		// a = 3, b = 1: blocks 3 and 4 would lie in the next row
+		boolean rejected = false;
+		try {
+			new FixedBaseTable(g, ctx, 20, 8, 5);
+		} catch (IllegalArgumentException e) {
+			rejected = true;
+		}
+		check("expBits 20, h 8, v 5 (rejected)", rejected);
+
+		System.out.println((failed == 0) ? "\nall OK" : "\n" + failed + " NG");
+		if (failed != 0) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean doCheck(FixedBaseTable t, MPInt g, MPInt p,
+			int bits, SecureRandom rng) {
+		MPInt limit = MPInt.ONE.shiftLeft(bits);
+		boolean ok = t.modPow(MPInt.ZERO).equals(MPInt.ONE)
+			&& t.modPow(limit.subtract(MPInt.ONE)).equals(
+				g.modPow(limit.subtract(MPInt.ONE), p));
+
+		for (int i = 0; i < count; i++) {
+			MPInt e = MPInt.random(rng, limit);
+			ok &= t.modPow(e).equals(g.modPow(e, p));
+		}
+		// beyond the table
+		MPInt e = limit.add(MPInt.random(rng, limit));
+		ok &= t.modPow(e).equals(g.modPow(e, p));
+		return ok;
+	}
+
+	private static void check(String name, boolean ok) {
+		System.out.println("  " + name + " : " + (ok ? "OK" : "NG"));
+		if (!ok) {
+			failed++;
+		}
+	}
+}
@@ -0,0 +1,319 @@
+/**
+ * FixedBaseTable.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-base exponentiation (Lim-Lee comb)
+ * <p>
+ * The exponent (up to expBits bits) is written as h rows of a = expBits/h
+ * bits, and each row is cut into v blocks of b = a/v bits.  The table holds
+ * G[j][u] = prod_i g^(u_i * 2^(i*a + j*b)) for every h-bit pattern u, so an
+ * exponentiation needs only b squarings and at most v*b multiplications.
+ * All entries are kept in Montgomery form.
+ */
+public final class FixedBaseTable {
+	/** rough per-entry overhead of a BigInteger (bytes) */
+	private static final int ENTRY_OVERHEAD = 48;
+
+	/** fixed base */
+	private final MPInt base;
+
+	/** Montgomery context of the modulus */
+	private final MontgomeryContext ctx;
+
+	/** maximum exponent length (bits) */
+	private final int expBits;
+
+	/** number of rows */
+	private final int h;
+
+	/** number of blocks per row */
+	private final int v;
+
+	/** bits per row */
+	private final int a;
+
+	/** bits per block */
+	private final int b;
+
+	/** G[j][u] (Montgomery form) */
+	private final BigInteger[][] table;
+
+	/**
+	 * Constructor
+	 *
+	 * @param base the fixed base
+	 * @param ctx the Montgomery context of the modulus
+	 * @param expBits the maximum exponent length (bits)
+	 * @param h the number of rows (table size 2^h per block)
+	 * @param v the number of blocks per row
+	 * @throws IllegalArgumentException if the last block of a row would
+	 *  start beyond the row ((v-1) * b >= a)
+	 */
+	public FixedBaseTable(MPInt base, MontgomeryContext ctx, int expBits,
+			int h, int v) {
+		if (expBits <= 0 || h <= 0 || h > 16 || v <= 0
+			|| !isValid(expBits, h, v)) {
+			throw new IllegalArgumentException("Illegal table parameter.");
+		}
+		this.base = base;
+		this.ctx = ctx;
+		this.expBits = expBits;
+		this.h = h;
+		this.v = v;
+		a = (expBits + h - 1) / h;
+		b = (a + v - 1) / v;
+
+		// g^(2^(i*a + j*b)) for each row i and block j
+		BigInteger[][] basis = new BigInteger[h][v];
+		BigInteger t = ctx.toMont(base.bigInt.mod(ctx.getModulus().bigInt));
+		int pos = 0;
+		for (int i = 0; i < h; i++) {
+			for (int j = 0; j < v; j++) {
+				int target = i * a + j * b;
+				for (; pos < target; pos++) {
+					t = ctx.montMul(t, t);
+				}
+				basis[i][j] = t;
+			}
+		}
+
+		table = new BigInteger[v][1 << h];
+		for (int j = 0; j < v; j++) {
+			BigInteger[] g = table[j];
+			g[0] = ctx.montOne();
+			for (int u = 1; u < (1 << h); u++) {
+				int top = 31 - Integer.numberOfLeadingZeros(u);
+				int rest = u & ~(1 << top);
+				g[u] = (rest == 0) ? basis[top][j]
+						: ctx.montMul(g[rest], basis[top][j]);
+			}
+		}
+	}
+
+	private FixedBaseTable(MPInt base, MontgomeryContext ctx, int expBits,
+			int h, int v, BigInteger[][] table) {
+		this.base = base;
+		this.ctx = ctx;
+		this.expBits = expBits;
+		this.h = h;
+		this.v = v;
+		a = (expBits + h - 1) / h;
+		b = (a + v - 1) / v;
+		this.table = table;
+	}
+
+	/**
+	 * Creates a table whose size does not exceed maxBytes.
+	 * The (h, v) pair with the fewest multiplications is chosen.
+	 *
+	 * @param base the fixed base
+	 * @param ctx the Montgomery context of the modulus
+	 * @param expBits the maximum exponent length (bits)
+	 * @param maxBytes the memory bound (bytes)
+	 * @return the table, or null if even the smallest table is too large
+	 */
+	public static FixedBaseTable create(MPInt base, MontgomeryContext ctx,
+			int expBits, long maxBytes) {
+		long entry = entrySize(ctx);
+		int bestH = 0;
+		int bestV = 0;
+		long bestCost = Long.MAX_VALUE;
+
+		for (int h = 1; h <= 12; h++) {
+			for (int v = 1; v <= 16; v++) {
+				long mem = (long) v * (1 << h) * entry;
+				if (mem > maxBytes) {
+					break;
+				}
+				int a = (expBits + h - 1) / h;
+				int b = (a + v - 1) / v;
+				long cost = b + (long) v * b;
+				if (cost < bestCost) {
+					bestCost = cost;
+					bestH = h;
+					bestV = v;
+				}
+			}
+		}
+		if (bestH == 0) {
+			return null;
+		}
+		return new FixedBaseTable(base, ctx, expBits, bestH, bestV);
+	}
+
+	/**
+	 * Gets the fixed base
+	 */
+	public MPInt getBase() {
+		return base;
+	}
+
+	/**
+	 * Gets the maximum exponent length (bits)
+	 */
+	public int getExpBits() {
+		return expBits;
+	}
+
+	/**
+	 * Gets the approximate memory size of the table (bytes)
+	 */
+	public long getMemorySize() {
+		return (long) v * (1 << h) * entrySize(ctx);
+	}
+
+	/**
+	 * Gets the length of the encoded table (bytes)
+	 */
+	public int getEncodedLength() {
+		return 8 + v * (1 << h) * entryBytes(ctx);
+	}
+
+	/**
+	 * Writes the table at the buffer position.
+	 *  Layout: expBits (int), h (short), v (short), then G[j][u] in
+	 *  Montgomery form, each as a fixed-length unsigned big-endian value.
+	 *
+	 * @param dst the output buffer (getEncodedLength() bytes)
+	 */
+	public void encode(ByteBuffer dst) {
+		int len = entryBytes(ctx);
+
+		dst.putInt(expBits);
+		dst.putShort((short) h);
+		dst.putShort((short) v);
+		for (int j = 0; j < v; j++) {
+			for (int u = 0; u < (1 << h); u++) {
+				byte[] e = table[j][u].toByteArray();
+				int off = (e.length > len) ? e.length - len : 0;
+				for (int i = e.length - off; i < len; i++) {
+					dst.put((byte) 0);
+				}
+				dst.put(e, off, e.length - off);
+			}
+		}
+	}
+
+	/**
+	 * Reads a table written by encode (at the buffer position).
+	 * <p>
+	 * The table must be for expBits, every entry must be below the
+	 * modulus, and the entries of the single powers g^(2^(i*a + j*b))
+	 * (G[j][2^i]) are recomputed from base, which costs about one
+	 * exponentiation; a table of another base or modulus is rejected.
+	 *
+	 * @param base the fixed base
+	 * @param ctx the Montgomery context of the modulus
+	 * @param expBits the maximum exponent length (bits)
+	 * @param src the input buffer
+	 * @return the table
+	 * @throws IllegalArgumentException if the table does not match
+	 */
+	public static FixedBaseTable decode(MPInt base, MontgomeryContext ctx,
+			int expBits, ByteBuffer src) {
+		int bits = src.getInt();
+		int h = src.getShort();
+		int v = src.getShort();
+		int len = entryBytes(ctx);
+
+		if (bits != expBits || h <= 0 || h > 16 || v <= 0
+			|| (long) v * (1 << h) * len > src.remaining()
+			|| !isValid(expBits, h, v)) {
+			throw new IllegalArgumentException("Illegal table parameter.");
+		}
+		BigInteger n = ctx.getModulus().bigInt;
+		BigInteger[][] table = new BigInteger[v][1 << h];
+		for (int j = 0; j < v; j++) {
+			for (int u = 0; u < (1 << h); u++) {
+				BigInteger e = MPInt.fromBytes(src, len).bigInt;
+				if (e.compareTo(n) >= 0) {
+					throw new IllegalArgumentException("Illegal table entry.");
+				}
+				table[j][u] = e;
+			}
+		}
+
+		FixedBaseTable t = new FixedBaseTable(base, ctx, expBits, h, v, table);
+		BigInteger one = ctx.montOne();
+		BigInteger g = ctx.toMont(base.bigInt.mod(n));
+		int pos = 0;
+		for (int i = 0; i < h; i++) {
+			for (int j = 0; j < v; j++) {
+				int target = i * t.a + j * t.b;
+				for (; pos < target; pos++) {
+					g = ctx.montMul(g, g);
+				}
+				if (!table[j][1 << i].equals(g) || !table[j][0].equals(one)) {
+					throw new IllegalArgumentException("Table of another base.");
+				}
+			}
+		}
+		return t;
+	}
+
+	/**
+	 * base ^ e mod n
+	 *
+	 * @param e the exponent
+	 * @return base ^ e mod n
+	 */
+	public MPInt modPow(MPInt e) {
+		BigInteger x = e.bigInt;
+
+		if (x.signum() < 0 || x.bitLength() > expBits) {
+			return base.modPow(e, ctx.getModulus());
+		}
+
+		BigInteger r = null;
+		for (int k = b - 1; k >= 0; k--) {
+			if (r != null) {
+				r = ctx.montMul(r, r);
+			}
+			for (int j = v - 1; j >= 0; j--) {
+				int off = j * b + k;
+				if (off >= a) {
+					continue;
+				}
+				int u = 0;
+				for (int i = h - 1; i >= 0; i--) {
+					u <<= 1;
+					if (x.testBit(i * a + off)) {
+						u |= 1;
+					}
+				}
+				if (u != 0) {
+					r = (r == null) ? table[j][u] : ctx.montMul(r, table[j][u]);
+				}
+			}
+		}
+		if (r == null) {
+			return MPInt.ONE;
+		}
+		return new MPInt(ctx.fromMont(r));
+	}
+
+	/**
+	 * Checks that every block starts inside its row ((v-1)*b < a), so the
+	 * single powers g^(2^(i*a + j*b)) are taken in increasing order.
+	 */
+	private static boolean isValid(int expBits, int h, int v) {
+		int a = (expBits + h - 1) / h;
+		int b = (a + v - 1) / v;
+		return (v - 1) * b < a;
+	}
+
+	private static long entrySize(MontgomeryContext ctx) {
+		return entryBytes(ctx) + ENTRY_OVERHEAD;
+	}
+
+	private static int entryBytes(MontgomeryContext ctx) {
+		return (ctx.getModulus().bitLength() + 7) / 8;
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * JacobiPerform.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.tools;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+import Blanclux.math.*;
+import Blanclux.util.Stopw;
+
+/**
+ * Jacobi symbol performance
+ *  subtraction loop (former MPInt.jacobi) vs. MPInt.jacobi2 vs. MPInt.jacobi
+ */
+public class JacobiPerform {
+	private static int[] modLens = { 256, 512, 1024, 2048, 4096 };
+	private static int count = 200;
+
+	private static final int[] jacobiTable = { 0, 1, 0, -1, 0, -1, 0, 1 };
+
+	/**
+	 * Usage : [count [modLength ...]]
+	 */
+	public static void main(String[] args) {
+
+		if (args.length >= 1) {
+			count = Integer.parseInt(args[0]);
+		}
+		if (args.length >= 2) {
+			modLens = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				modLens[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.print("*** Jacobi Symbol Performance Test [");
+		System.out.println(Calendar.getInstance(
+							TimeZone.getDefault()).getTime() + "] ***");
+		System.out.println("Loop : " + count + "\n");
+
+		SecureRandom rng = new SecureRandom();
+		for (int i = 0; i < modLens.length; i++) {
+			doTest(modLens[i], rng);
+		}
+	}
+
+	private static void doTest(int bits, SecureRandom rng) {
+		MPInt p = new MPInt(bits, rng).setBit(bits - 1).setBit(0);
+		MPInt[] a = new MPInt[count];
+		int[] r = new int[count];
+
+		for (int i = 0; i < count; i++) {
+			a[i] = MPInt.random(rng, p);
+		}
+
+		Stopw sw = new Stopw(3);
+
+		// warm up
+		for (int i = 0; i < count; i++) {
+			jacobiSub(a[i], p);
+			MPInt.jacobi2(a[i], p);
+			MPInt.jacobi(a[i], p);
+		}
+
+		sw.start(0);
+		for (int i = 0; i < count; i++) {
+			r[i] = jacobiSub(a[i], p);
+		}
+		sw.stop(0);
+
+		sw.start(1);
+		for (int i = 0; i < count; i++) {
+			if (MPInt.jacobi2(a[i], p) != r[i]) {
+				System.err.println("JacobiPerform: jacobi2 mismatch");
+				return;
+			}
+		}
+		sw.stop(1);
+
+		sw.start(2);
+		for (int i = 0; i < count; i++) {
+			if (MPInt.jacobi(a[i], p) != r[i]) {
+				System.err.println("JacobiPerform: jacobi mismatch");
+				return;
+			}
+		}
+		sw.stop(2);
+
+		System.out.println("Modulus : " + bits + " bits");
+		System.out.println("  subtraction = "
+					+ (float) sw.getTime(0) / (float) count + " msec");
+		System.out.println("  jacobi2     = "
+					+ (float) sw.getTime(1) / (float) count + " msec");
+		System.out.println("  jacobi      = "
+					+ (float) sw.getTime(2) / (float) count + " msec");
+	}
+
+	/**
+	 * Reference: subtraction-only binary algorithm (0 <= a, b odd)
+	 */
+	private static int jacobiSub(MPInt a, MPInt b) {
+		int k = 1;
+
+		while (a.signum() != 0) {
+			int v = 0;
+			while (!a.testBit(0)) {
+				v++;
+				a = a.divide(MPInt.TWO);
+			}
+			if ((v & 1) != 0) {
+				k = k * jacobiTable[b.intValue() & 7];
+			}
+			if (a.compareTo(b) < 0) {
+				MPInt x = a;
+				a = b;
+				b = x;
+				if (a.testBit(1) && b.testBit(1)) {
+					k = -k;
+				}
+			}
+			a = a.subtract(b);
+		}
+
+		return b.equals(MPInt.ONE) ? k : 0;
+	}
+}
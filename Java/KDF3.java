@@ -6,6 +6,8 @@
 package Blanclux.crypto.encode;
 
 import java.security.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import Blanclux.crypto.*;
 
@@ -17,8 +19,11 @@ public class KDF3 extends MessageEncode {
 	/** Parameter */
 	protected byte[] param;
 
+	/** minimum number of blocks per parallel task */
+	private static final int MIN_CHUNK = 16;
+
 	/**
-	 * Constructor
+	 * Constructor (SHA-1)
 	 */
 	public KDF3() {
 		super("KDF3");
@@ -31,54 +36,174 @@ public class KDF3 extends MessageEncode {
 		}
 	}
 
+	/**
+	 * Constructor
+	 *
+	 * @param hash MessageDigest (SHA-1, SHA-256/384/512, SHA3, ...)
+	 */
+	public KDF3(MessageDigest hash) {
+		super("KDF3");
+		init(hash);
+	}
+
 	/**
 	 * Key derivation
+	 *  K = Hash(0 || Z || P) || Hash(1 || Z || P) || ...
+	 * <p>
+	 * The counter comes first, so no hash state can be shared between
+	 * blocks; CB || ZB || PB is laid out once and only the counter bytes
+	 * are rewritten.  Full blocks are digested straight into the key.
 	 *
 	 * @param info the seed information
 	 * @return the generated key
 	 */
 	public byte[] encode(byte[] info) {
+		byte[] tmp = layout(info);
+
+		int outLen = (encLen + 7) / 8;
+		byte[] key = new byte[outLen];
+
+		try {
+			derive(digest, tmp, key, 0, outLen, 0);
+		} catch (DigestException e) {
+			throw new RuntimeException(e.toString());
+		}
+		return key;
+	}
+
+	/**
+	 * Key derivation (parallel on the common pool)
+	 *
+	 * @param info the seed information
+	 * @return the generated key (same as encode)
+	 */
+	public byte[] encodeParallel(byte[] info) {
+		return encodeParallel(info, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Key derivation (parallel)
+	 * <p>
+	 * The counter range is split into chunks; each task hashes its blocks
+	 * with its own copy of the digest into a disjoint slice of the key.
+	 * Short outputs are derived sequentially.
+	 *
+	 * @param info the seed information
+	 * @param pool the ForkJoinPool
+	 * @return the generated key (same as encode)
+	 */
+	public byte[] encodeParallel(byte[] info, ForkJoinPool pool) {
+		int outLen = (encLen + 7) / 8;
+		int count = (outLen + digestLen - 1) / digestLen;
+		int chunk = Math.max(MIN_CHUNK, count / (4 * pool.getParallelism()));
+
+		if (count <= chunk) {
+			return encode(info);
+		}
+
+		byte[] tmp = layout(info);
+		byte[] key = new byte[outLen];
+		pool.invoke(new Blocks(0, count, chunk, tmp, key));
+		return key;
+	}
+
+	/**
+	 * CB || ZB || PB (counter bytes left 0)
+	 */
+	private byte[] layout(byte[] info) {
 		int zLen = info.length;
-		byte[] hashValue;
-		byte[] cNum;
-		byte[] tmp;
 
 		param = (byte[]) parameter;
 
+		int pLen = (param != null) ? param.length : 0;
+		byte[] tmp = new byte[4 + zLen + pLen];
+		System.arraycopy(info, 0, tmp, 4, zLen);
 		if (param != null) {
-			tmp = new byte[zLen + 4 + param.length];
-		} else {
-			tmp = new byte[zLen + 4];
+			System.arraycopy(param, 0, tmp, 4 + zLen, pLen);
 		}
+		return tmp;
+	}
 
-		int count = (encLen + digestLen - 1) / digestLen;
-		int outLen = (encLen + 7) / 8;
-		byte[] data = new byte[count * digestLen];
-		int off = 0;
-
-		for (int i = 0; i < count; i++) {
-			// CB
-			cNum = int2Byte(i);
-			// CB || ZB || PB
-			System.arraycopy(cNum, 0, tmp, 0, 4);
-			System.arraycopy(info, 0, tmp, 4, zLen);
-
-			if (parameter != null) {
-				System.arraycopy(param, 0, tmp, zLen + 4, param.length);
+	/**
+	 * Counter range [lo, hi) of a parallel derivation
+	 */
+	private class Blocks extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int lo;
+		private final int hi;
+		private final int chunk;
+		private final byte[] tmp;
+		private final byte[] key;
+
+		Blocks(int lo, int hi, int chunk, byte[] tmp, byte[] key) {
+			this.lo = lo;
+			this.hi = hi;
+			this.chunk = chunk;
+			this.tmp = tmp;
+			this.key = key;
+		}
+
+		protected void compute() {
+			if (hi - lo <= chunk) {
+				int off = lo * digestLen;
+				int end = Math.min(hi * digestLen, key.length);
+				try {
+					derive(newDigest(), tmp.clone(), key, off, end - off, lo);
+				} catch (DigestException e) {
+					throw new RuntimeException(e.toString());
+				}
+				return;
 			}
+			int mid = (lo + hi) >>> 1;
+			invokeAll(new Blocks(lo, mid, chunk, tmp, key),
+					  new Blocks(mid, hi, chunk, tmp, key));
+		}
+	}
 
-			// HB = Hash(CB || ZB || PB)
-			digest.reset();
-			hashValue = digest.digest(tmp);
-			// MB = MB || HB
-			System.arraycopy(hashValue, 0, data, off, digestLen);
-			off += digestLen;
+	/**
+	 * MessageDigest of one task (same algorithm as digest)
+	 */
+	private MessageDigest newDigest() {
+		try {
+			return (MessageDigest) digest.clone();
+		} catch (CloneNotSupportedException e) {
+			try {
+				return MessageDigest.getInstance(digest.getAlgorithm(),
+												 digest.getProvider());
+			} catch (NoSuchAlgorithmException ex) {
+				throw new RuntimeException(ex.toString());
+			}
 		}
+	}
 
-		byte[] key = new byte[outLen];
-		System.arraycopy(data, 0, key, 0, outLen);
+	/**
+	 * HB(i) = Hash(CB(i) || ZB || PB) into out[off..off+len), starting
+	 * from counter c (tmp = CB || ZB || PB, the counter bytes are
+	 * overwritten)
+	 */
+	private static void derive(MessageDigest md, byte[] tmp, byte[] out,
+			int off, int len, int c) throws DigestException {
+		int hashLen = md.getDigestLength();
 
-		return key;
+		for (; len > 0; c++) {
+			tmp[0] = (byte) (c >>> 24);
+			tmp[1] = (byte) (c >>> 16);
+			tmp[2] = (byte) (c >>> 8);
+			tmp[3] = (byte) c;
+
+			// HB = Hash(CB || ZB || PB)
+			md.reset();
+			md.update(tmp);
+			if (len >= hashLen) {
+				md.digest(out, off, hashLen);
+				off += hashLen;
+				len -= hashLen;
+			} else {
+				System.arraycopy(md.digest(), 0, out, off, len);
+				len = 0;
+			}
+		}
 	}
 
 	public byte[] decode(byte[] enc) {
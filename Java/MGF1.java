@@ -13,9 +13,16 @@ import Blanclux.crypto.*;
  * MGF1 Mask Generation
  */
 public class MGF1 extends MessageEncode {
+	/** seed length (bytes) from which the seed state is cloned */
+	private static final int PREFIX_THRESHOLD = 64;
+
+	/** counter block */
+	private final byte[] counter = new byte[4];
+	/** hash output block */
+	private byte[] block;
 
 	/**
-	 * Constructor
+	 * Constructor (SHA-1)
 	 */
 	public MGF1() {
 		algorithm = "MGF1";
@@ -29,6 +36,16 @@ public class MGF1 extends MessageEncode {
 		}
 	}
 
+	/**
+	 * Constructor
+	 *
+	 * @param hash MessageDigest
+	 */
+	public MGF1(MessageDigest hash) {
+		algorithm = "MGF1";
+		init(hash);
+	}
+
 	/**
 	 * Mask generation
 	 *
@@ -36,30 +53,84 @@ public class MGF1 extends MessageEncode {
 	 * @return the mask data
 	 */
 	public byte[] encode(byte[] msg) {
-		int hashLen = digest.getDigestLength();
 		int outLen = (encLen + 7) / 8;
-		int block = (outLen + hashLen - 1) / hashLen;
-		byte[] bT = new byte[block * hashLen];
 		byte[] mask = new byte[outLen];
-		int off = 0;
 
-		for (int i = 0; i < block; i++) {
-			byte[] bC = int2Byte(i);
-			byte[] bMC = new byte[msg.length + bC.length];
+		maskInto(msg, 0, msg.length, mask, 0, outLen);
+		return mask;
+	}
+
+	/**
+	 * Initialize (Set MessageDigest)
+	 *
+	 * @param digest MessageDigest (SHA-1, SHA-256/384/512, SHA3, ...)
+	 */
+	public void init(MessageDigest digest) {
+		super.init(digest);
+		block = null;
+	}
 
-			System.arraycopy(msg, 0, bMC, 0, msg.length);
-			System.arraycopy(bC, 0, bMC, msg.length, bC.length);
+	/**
+	 * Mask generation and XOR
+	 *  dst[dstOff..dstOff+len) ^= MGF(seed[seedOff..seedOff+seedLen), len)
+	 * <p>
+	 * Each block hashes seed and counter by update, without concatenation,
+	 * into a scratch block.  A seed of PREFIX_THRESHOLD bytes or more is
+	 * hashed once and the digest state is cloned for every counter block.
+	 * The seed must not overlap the dst range.
+	 *
+	 * @param seed the seed area
+	 * @param seedOff the seed offset
+	 * @param seedLen the seed length
+	 * @param dst the data to be masked
+	 * @param dstOff the data offset
+	 * @param len the mask length (bytes)
+	 */
+	public void maskInto(byte[] seed, int seedOff, int seedLen, byte[] dst,
+			int dstOff, int len) {
+		int hashLen = digest.getDigestLength();
 
-			digest.reset();
-			byte[] bH = digest.digest(bMC);
+		if (block == null || block.length != hashLen) {
+			block = new byte[hashLen];
+		}
 
-			System.arraycopy(bH, 0, bT, off, hashLen);
-			off += hashLen;
+		// digest holds Hash state of the seed
+		boolean prefix = seedLen >= PREFIX_THRESHOLD && len > hashLen;
+		digest.reset();
+		if (prefix) {
+			digest.update(seed, seedOff, seedLen);
 		}
 
-		System.arraycopy(bT, 0, mask, 0, outLen);
+		try {
+			for (int i = 0; len > 0; i++) {
+				counter[0] = (byte) (i >>> 24);
+				counter[1] = (byte) (i >>> 16);
+				counter[2] = (byte) (i >>> 8);
+				counter[3] = (byte) i;
 
-		return mask;
+				MessageDigest md = digest;
+				if (!prefix) {
+					md.update(seed, seedOff, seedLen);
+				} else if (len > hashLen) {
+					try {
+						md = (MessageDigest) digest.clone();
+					} catch (CloneNotSupportedException e) {
+						prefix = false;
+					}
+				}
+				md.update(counter, 0, 4);
+				md.digest(block, 0, hashLen);
+
+				int n = (len < hashLen) ? len : hashLen;
+				for (int j = 0; j < n; j++) {
+					dst[dstOff + j] ^= block[j];
+				}
+				dstOff += n;
+				len -= n;
+			}
+		} catch (DigestException e) {
+			throw new RuntimeException(e.toString());
+		}
 	}
 
 	public byte[] decode(byte[] enc) {
@@ -6,7 +6,10 @@
 package Blanclux.math;
 
 import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Arrays;
 
 public final class MPInt {
 	// useful MPInt constants
@@ -28,6 +31,10 @@ public final class MPInt {
 		bigInt = new BigInteger(signum, magnitude);
 	}
 
+	public MPInt(int signum, byte[] magnitude, int off, int len) {
+		bigInt = new BigInteger(signum, magnitude, off, len);
+	}
+
 	public MPInt(String val, int radix) {
 		bigInt = new BigInteger(val, radix);
 	}
@@ -441,6 +448,108 @@ public final class MPInt {
 		return t;
 	}
 
+	/**
+	 * dst = a + b mod n (in place)
+	 * 
+	 * @param a MutableMPInt value (0 <= a < n)
+	 * @param b MutableMPInt value (0 <= b < n)
+	 * @param n the modulus
+	 * @param dst the result (may be a or b)
+	 * @return dst
+	 */
+	public static MutableMPInt modadd(MutableMPInt a, MutableMPInt b,
+			MutableMPInt n, MutableMPInt dst) {
+		dst.addInto(a, b);
+
+		if (dst.compareTo(n) >= 0) {
+			dst.subInto(dst, n);
+		}
+
+		return dst;
+	}
+
+	/**
+	 * dst = a - b mod n (in place)
+	 * 
+	 * @param a MutableMPInt value (0 <= a < n)
+	 * @param b MutableMPInt value (0 <= b < n)
+	 * @param n the modulus
+	 * @param dst the result (may be a, must not be b)
+	 * @return dst
+	 */
+	public static MutableMPInt modsub(MutableMPInt a, MutableMPInt b,
+			MutableMPInt n, MutableMPInt dst) {
+
+		if (a.compareTo(b) < 0) {
+			if (dst == b) {
+				throw new IllegalArgumentException("dst must not be b.");
+			}
+			dst.addInto(a, n);
+			dst.subInto(dst, b);
+		} else {
+			dst.subInto(a, b);
+		}
+
+		return dst;
+	}
+
+	/**
+	 * dst = a * b mod n (in place)
+	 * 
+	 * @param a MutableMPInt value
+	 * @param b MutableMPInt value
+	 * @param n the modulus
+	 * @param dst the result (may be a or b)
+	 * @return dst
+	 */
+	public static MutableMPInt modmult(MutableMPInt a, MutableMPInt b,
+			MutableMPInt n, MutableMPInt dst) {
+
+		if (a.isZero() || b.isZero()) {
+			dst.setZero();
+			return dst;
+		}
+
+		dst.mulInto(a, b);
+		return dst.modInto(dst, n);
+	}
+
+	/**
+	 * dst = n ^ e (in place)
+	 * 
+	 * @param n MutableMPInt value
+	 * @param e long value
+	 * @param dst the result (must not be n)
+	 * @return dst
+	 */
+	public static MutableMPInt expu(MutableMPInt n, long e, MutableMPInt dst) {
+
+		if (dst == n) {
+			throw new IllegalArgumentException("dst must not be n.");
+		}
+		if (e == 0) {
+			dst.setOne();
+			return dst;
+		}
+		if (n.isZero()) {
+			dst.setZero();
+			return dst;
+		}
+
+		int blen = 64 - Long.numberOfLeadingZeros(e);
+
+		dst.set(n);
+		for (int i = blen - 2; i >= 0; i--) {
+			dst.mulInto(dst, dst); // dst = dst^2
+
+			if (((e >>> i) & 1) != 0) {
+				dst.mulInto(dst, n); // dst = dst * n
+			}
+		}
+
+		return dst;
+	}
+
 	/**
 	 * n^d mod pq (CRT)
 	 * 
@@ -464,40 +573,319 @@ public final class MPInt {
 		return t.multiply(q).add(xq);
 	}
 
+	// number of bases from which the interleaved method is used
+	private static final int MULTI_EXP_THRESHOLD = 5;
+
+	/**
+	 * prod(bases[i] ^ exps[i]) mod n (simultaneous multi-exponentiation)
+	 * For MULTI_EXP_THRESHOLD or more bases the interleaved sliding window
+	 * method is used; for fewer bases separate BigInteger.modPow calls
+	 * (intrinsic Montgomery loops) are faster than shared squarings.
+	 * 
+	 * @param bases the bases
+	 * @param exps the exponents
+	 * @param mod the modulus
+	 * @return prod(bases[i] ^ exps[i]) mod n
+	 */
+	public static MPInt multiModPow(MPInt[] bases, MPInt[] exps, MPInt mod) {
+
+		if (bases.length != exps.length) {
+			throw new IllegalArgumentException("Length mismatch.");
+		}
+		if (mod.signum() <= 0) {
+			throw new ArithmeticException("Modulus not positive.");
+		}
+		if (isOne(mod)) {
+			return ZERO;
+		}
+		if (!mod.testBit(0) || bases.length < MULTI_EXP_THRESHOLD) {
+			MPInt t = ONE;
+			for (int i = 0; i < bases.length; i++) {
+				t = t.multiply(bases[i].modPow(exps[i], mod)).mod(mod);
+			}
+			return t;
+		}
+		return multiModPow(bases, exps, new MontgomeryContext(mod));
+	}
+
+	/**
+	 * prod(bases[i] ^ exps[i]) mod n (precomputed modulus context)
+	 * Interleaved sliding windows: the squarings are shared by all bases.
+	 * 
+	 * @param bases the bases
+	 * @param exps the exponents
+	 * @param ctx MontgomeryContext of the modulus
+	 * @return prod(bases[i] ^ exps[i]) mod n
+	 */
+	public static MPInt multiModPow(MPInt[] bases, MPInt[] exps,
+			MontgomeryContext ctx) {
+		int num = bases.length;
+		BigInteger n = ctx.getModulus().bigInt;
+		BigInteger[] e = new BigInteger[num];
+		BigInteger[][] table = new BigInteger[num][];
+		int[][] wnd = new int[num][];
+		int maxBits = 0;
+
+		if (exps.length != num) {
+			throw new IllegalArgumentException("Length mismatch.");
+		}
+
+		for (int i = 0; i < num; i++) {
+			BigInteger b = bases[i].bigInt;
+			e[i] = exps[i].bigInt;
+			if (e[i].signum() < 0) {
+				b = b.modInverse(n);
+				e[i] = e[i].negate();
+			}
+			int bits = e[i].bitLength();
+			maxBits = Math.max(maxBits, bits);
+			if (bits == 0) {
+				continue;
+			}
+			int w = windowSize(bits);
+
+			// odd powers b^1, b^3, ..., b^(2^w - 1)
+			table[i] = new BigInteger[1 << (w - 1)];
+			table[i][0] = ctx.toMont(b.mod(n));
+			BigInteger b2 = ctx.montMul(table[i][0], table[i][0]);
+			for (int j = 1; j < table[i].length; j++) {
+				table[i][j] = ctx.montMul(table[i][j - 1], b2);
+			}
+
+			// wnd[i][l] = odd window value ending at bit l (0: none)
+			wnd[i] = new int[bits];
+			int j = bits - 1;
+			while (j >= 0) {
+				if (!e[i].testBit(j)) {
+					j--;
+					continue;
+				}
+				int l = Math.max(j - w + 1, 0);
+				while (!e[i].testBit(l)) {
+					l++;
+				}
+				int val = 0;
+				for (int k = j; k >= l; k--) {
+					val = (val << 1) | (e[i].testBit(k) ? 1 : 0);
+				}
+				wnd[i][l] = val;
+				j = l - 1;
+			}
+		}
+
+		BigInteger acc = null;
+		for (int j = maxBits - 1; j >= 0; j--) {
+			if (acc != null) {
+				acc = ctx.montMul(acc, acc);
+			}
+			for (int i = 0; i < num; i++) {
+				if (wnd[i] == null || j >= wnd[i].length || wnd[i][j] == 0) {
+					continue;
+				}
+				BigInteger t = table[i][wnd[i][j] >>> 1];
+				acc = (acc == null) ? t : ctx.montMul(acc, t);
+			}
+		}
+		if (acc == null) {
+			return ONE;
+		}
+		return new MPInt(ctx.fromMont(acc));
+	}
+
+	private static int windowSize(int bits) {
+		if (bits <= 7) {
+			return 1;
+		} else if (bits <= 25) {
+			return 2;
+		} else if (bits <= 81) {
+			return 3;
+		} else if (bits <= 241) {
+			return 4;
+		} else if (bits <= 673) {
+			return 5;
+		}
+		return 6;
+	}
+
 	/**
 	 * floor(sqrt(n))
+	 * Newton iteration started from the recursively computed root of the
+	 * upper half, so each level needs only one or two division steps.
 	 * 
 	 * @param n MPInt value
 	 * @return (floor(sqrt(n))
 	 */
 	public static MPInt sqrt(MPInt n) {
-		MPInt sb;
-		MPInt s;
-		MPInt st;
-		MPInt t1;
-		MPInt t2;
-		int b = n.bitLength() + 1;
-
-		sb = MPInt.ONE;
-		t1 = MPInt.ZERO;
-		t2 = n;
-		s = MPInt.ZERO;
-		b >>= 1;
-
-		while (b-- != 0) {
-			st = s.add(sb.shiftLeft(b));
-			t1 = st.multiply(st);
-
-			if (t2.compareTo(t1) >= 0) {
-				s = st;
+		if (n.signum() < 0) {
+			throw new ArithmeticException("Negative argument.");
+		}
+		return new MPInt(sqrt(n.bigInt));
+	}
+
+	private static BigInteger sqrt(BigInteger n) {
+		int len = n.bitLength();
+
+		if (len < 63) {
+			return BigInteger.valueOf(sqrt(n.longValue()));
+		}
+
+		// x >= sqrt(n), relative error about 2^(-len/4)
+		int s = len / 4;
+		BigInteger x = sqrt(n.shiftRight(2 * s)).add(BigInteger.ONE).shiftLeft(s);
+
+		for (;;) {
+			BigInteger y = x.add(n.divide(x)).shiftRight(1);
+			if (y.compareTo(x) >= 0) {
+				return x;
 			}
+			x = y;
+		}
+	}
 
-			if (t2.compareTo(t1) == 0) {
-				break;
+	private static long sqrt(long n) {
+		long r = (long) Math.sqrt((double) n);
+
+		while (r * r > n) {
+			r--;
+		}
+		while (r + 1 <= n / (r + 1)) {
+			r++;
+		}
+		return r;
+	}
+
+	/**
+	 * floor(sqrt(n)) and the remainder
+	 * 
+	 * @param n MPInt value
+	 * @return {s, n - s^2} (s = floor(sqrt(n)))
+	 */
+	public static MPInt[] sqrtRem(MPInt n) {
+		MPInt[] ret = new MPInt[2];
+
+		ret[0] = sqrt(n);
+		ret[1] = n.subtract(ret[0].multiply(ret[0]));
+
+		return ret;
+	}
+
+	// quadratic residues mod 64, 63, 65, 11
+	private static final boolean[] sq64 = residues(64, 2);
+	private static final boolean[] sq63 = residues(63, 2);
+	private static final boolean[] sq65 = residues(65, 2);
+	private static final boolean[] sq11 = residues(11, 2);
+
+	private static boolean[] residues(int m, int k) {
+		boolean[] t = new boolean[m];
+
+		for (int i = 0; i < m; i++) {
+			t[BigInteger.valueOf(i).pow(k).mod(BigInteger.valueOf(m)).intValue()] = true;
+		}
+		return t;
+	}
+
+	/**
+	 * n is a perfect square ?
+	 * Most non-squares are rejected by the residues mod 64, 63, 65 and 11
+	 * before the square root is computed.
+	 * 
+	 * @param n MPInt value
+	 * @return true: n = s^2 / false: other
+	 */
+	public static boolean isPerfectSquare(MPInt n) {
+		if (n.signum() < 0) {
+			return false;
+		}
+		if (!sq64[n.bigInt.intValue() & 63]) {
+			return false;
+		}
+		int r = n.bigInt.mod(BigInteger.valueOf(45045)).intValue(); // 63*65*11
+		if (!sq63[r % 63] || !sq65[r % 65] || !sq11[r % 11]) {
+			return false;
+		}
+		MPInt[] sr = sqrtRem(n);
+		return sr[1].signum() == 0;
+	}
+
+	/**
+	 * n is a perfect power (n = m^k, k >= 2) ?
+	 * For each prime k the k-th power residues modulo a few small primes
+	 * p = 1 (mod k) are checked before the k-th root is computed.
+	 * 
+	 * @param n MPInt value
+	 * @return true: n is a perfect power / false: other
+	 */
+	public static boolean isPerfectPower(MPInt n) {
+		BigInteger b = n.bigInt;
+
+		if (b.signum() < 0) {
+			// -m^k with odd k
+			b = b.negate();
+		} else if (isPerfectSquare(n)) {
+			return true;
+		}
+		if (b.compareTo(BigInteger.ONE) <= 0) {
+			return true;
+		}
+
+		int len = b.bitLength();
+		int tz = b.getLowestSetBit();
+
+		for (int k = 3; k < len; k += 2) {
+			if (!isPrime(k)) {
+				continue;
+			}
+			// 2^tz || m^k
+			if (tz != 0 && tz % k != 0) {
+				continue;
+			}
+			if (!powerResidues(b, k)) {
+				continue;
+			}
+			BigInteger r = root(b, k);
+			if (r.pow(k).equals(b)) {
+				return true;
 			}
 		}
+		return false;
+	}
 
-		return s;
+	/**
+	 * b mod p is a k-th power for a few primes p = 1 (mod k) ?
+	 */
+	private static boolean powerResidues(BigInteger b, int k) {
+		int found = 0;
+
+		for (long p = 2L * k + 1; found < 4 && p < (1L << 31); p += 2L * k) {
+			if (!PrimalityTester.isPrime(p)) {
+				continue;
+			}
+			found++;
+			BigInteger bp = BigInteger.valueOf(p);
+			BigInteger r = b.mod(bp);
+			if (r.signum() != 0
+					&& !r.modPow(BigInteger.valueOf((p - 1) / k), bp).equals(BigInteger.ONE)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * floor(b^(1/k)) (Newton iteration from above)
+	 */
+	private static BigInteger root(BigInteger b, int k) {
+		BigInteger bk = BigInteger.valueOf(k);
+		BigInteger k1 = BigInteger.valueOf(k - 1);
+		BigInteger x = BigInteger.ONE.shiftLeft((b.bitLength() + k - 1) / k);
+
+		for (;;) {
+			BigInteger y = k1.multiply(x).add(b.divide(x.pow(k - 1))).divide(bk);
+			if (y.compareTo(x) >= 0) {
+				return x;
+			}
+			x = y;
+		}
 	}
 
 	/**
@@ -549,7 +937,7 @@ public final class MPInt {
 			s = a;
 		}
 
-		gd = s.gcd(l);
+		gd = gcd(s, l);
 		sr = s.divide(gd);
 
 		return sr.multiply(l);
@@ -561,107 +949,35 @@ public final class MPInt {
 	 * @param a the MPInt a
 	 * @param p the MPInt p
 	 * @return a MPInt x such that x^2 = a mod p
+	 * @see ModSqrtContext
 	 */
 	public static MPInt modsqrt(MPInt a, MPInt p) {
+		ModSqrtContext ctx = lastSqrtContext;
 
-		MPInt v = null;
-
-		if (a.compareTo(ZERO) < 0) {
-			a = a.add(p);
-		}
-		if (a.equals(ZERO)) {
-			return ZERO;
-		}
-		if (p.equals(TWO)) {
-			return a;
-		}
-
-		// p = 3 mod 4
-		if (p.testBit(0) && p.testBit(1)) {
-			if (jacobi(a, p) == 1) { // a quadr. residue mod p
-				v = p.add(ONE); // v = p+1
-				v = v.shiftRight(2); // v = v/4
-				return a.modPow(v, p); // return a^v mod p
-				// return --> a^((p+1)/4) mod p
-			}
-			throw new ArithmeticException();
-		}
-
-		long t = 0;
-		// initialization
-		// compute k and s, where p = 2^s (2k+1) +1
-		MPInt k = p.subtract(ONE); // k = p-1
-		long s = 0;
-		while (!k.testBit(0)) { // while k is even
-			s++; // s = s+1
-			k = k.shiftRight(1); // k = k/2
-		}
-
-		k = k.subtract(ONE); // k = k - 1
-		k = k.shiftRight(1); // k = k/2
-
-		// initial values
-		MPInt r = a.modPow(k, p); // r = a^k mod p
-
-		MPInt n = r.multiply(r).remainder(p); // n = r^2 % p
-		n = n.multiply(a).remainder(p); // n = n * a % p
-		r = r.multiply(a).remainder(p); // r = r * a %p
-
-		if (n.equals(ONE)) {
-			return r;
-		}
-
-		// non-quadratic residue
-		MPInt z = TWO; // z = 2
-		while (jacobi(z, p) == 1) {
-			// while z quadratic residue
-			z = z.add(ONE); // z = z + 1
-		}
-
-		v = k;
-		v = v.multiply(TWO); // v = 2k
-		v = v.add(ONE); // v = 2k + 1
-		MPInt c = z.modPow(v, p); // c = z^v mod p
-
-		while (n.compareTo(ONE) == 1) { // n > 1
-			k = n; // k = n
-			t = s; // t = s
-			s = 0;
-
-			while (!k.equals(ONE)) { // k != 1
-				k = k.multiply(k).mod(p); // k = k^2 % p
-				s++; // s = s + 1
-			}
-
-			t -= s; // t = t - s
-			if (t == 0) {
-				throw new ArithmeticException();
-			}
-
-			v = ONE;
-			for (long i = 0; i < t - 1; i++) {
-				v = v.shiftLeft(1); // v = 1 * 2^(t - 1)
-			}
-			c = c.modPow(v, p); // c = c^v mod p
-			r = r.multiply(c).remainder(p); // r = r * c % p
-			c = c.multiply(c).remainder(p); // c = c^2 % p
-			n = n.multiply(c).mod(p); // n = n * c % p
+		if (ctx == null || !ctx.getModulus().equals(p)) {
+			ctx = new ModSqrtContext(p);
+			lastSqrtContext = ctx;
 		}
-		return r;
+		return ctx.sqrt(a);
 	}
 
+	// context of the last modsqrt modulus
+	private static volatile ModSqrtContext lastSqrtContext;
+
 	// the jacobi function uses this lookup table
 	private static final int[] jacobiTable = { 0, 1, 0, -1, 0, -1, 0, 1 };
 	/**
 	 * Computes the value of the Jacobi symbol (A|B).
+	 * Powers of two are removed by shifts, the reciprocity step reduces
+	 * with a remainder, and the last steps run on long values.
 	 * 
 	 * @param A integer value
 	 * @param B integer value
 	 * @return value of the jacobi symbol (A|B)
 	 */
 	public static int jacobi(MPInt A, MPInt B) {
-		MPInt a, b, v;
-		long k = 1;
+		MPInt a, b;
+		int k = 1;
 
 		// test trivial cases
 		if (B.equals(ZERO)) {
@@ -680,13 +996,10 @@ public final class MPInt {
 				k = -1;
 			}
 		}
-		v = ZERO;
-		while (!b.testBit(0)) {
-			v = v.add(ONE); // v = v + 1
-			b = b.divide(TWO); // b = b/2
-		}
+		int v = b.getLowestSetBit();
+		b = b.shiftRight(v);
 
-		if (v.testBit(0)) {
+		if ((v & 1) != 0) {
 			k = k * jacobiTable[a.intValue() & 7];
 		}
 		if (a.signum() < 0) { // a < 0
@@ -696,29 +1009,64 @@ public final class MPInt {
 			a = a.negate(); // a = -a
 		}
 
-		// main loop
-		while (a.signum() != 0) {
-			v = ZERO;
-			while (!a.testBit(0)) { // a is even
-				v = v.add(ONE);
-				a = a.divide(TWO);
+		// b is odd and positive
+		if (b.bitLength() < 64) {
+			long n = b.longValue();
+			return k * jacobi(a.bigInt.mod(b.bigInt).longValue(), n);
+		}
+
+		MutableMPInt x = new MutableMPInt(b.bitLength() / 32 + 1);
+		MutableMPInt y = new MutableMPInt(b);
+		MutableMPInt t = new MutableMPInt(b.bitLength() / 32 + 1);
+		MutableMPInt w;
+
+		x.modInto(new MutableMPInt(a), y);
+		while (y.len > 2) {
+			if (x.isZero()) {
+				return 0;
 			}
-			if (v.testBit(0)) {
-				k = k * jacobiTable[b.intValue() & 7];
+			int z = x.getLowestSetBit();
+			x.shiftRightInPlace(z);
+			int y8 = y.intValue() & 7;
+			if ((z & 1) != 0 && (y8 == 3 || y8 == 5)) {
+				k = -k;
 			}
-			if (a.compareTo(b) < 0) { // a < b
-				// swap and correct intermediate result
-				MPInt x = a;
-				a = b;
-				b = x;
-				if (a.testBit(1) && b.testBit(1)) {
-					k = -k;
-				}
+			if ((x.intValue() & 3) == 3 && (y8 & 3) == 3) {
+				k = -k;
+			}
+			t.modInto(y, x);
+			w = y; y = x; x = t; t = w;
+		}
+
+		return k * jacobi(x.longValue(), y.longValue());
+	}
+
+	/**
+	 * Computes the value of the Jacobi symbol (a|n) for word values.
+	 * 
+	 * @param a unsigned value (a < n)
+	 * @param n odd unsigned value
+	 * @return value of the jacobi symbol (a|n)
+	 */
+	static int jacobi(long a, long n) {
+		int k = 1;
+
+		while (a != 0) {
+			int z = Long.numberOfTrailingZeros(a);
+			a >>>= z;
+			int n8 = (int) n & 7;
+			if ((z & 1) != 0 && (n8 == 3 || n8 == 5)) {
+				k = -k;
+			}
+			if ((a & 3) == 3 && (n8 & 3) == 3) {
+				k = -k;
 			}
-			a = a.subtract(b);
+			long t = Long.remainderUnsigned(n, a);
+			n = a;
+			a = t;
 		}
 
-		return b.equals(ONE) ? (int) k : 0;
+		return (n == 1) ? k : 0;
 	}
 
 	/**
@@ -777,10 +1125,7 @@ public final class MPInt {
 	}
 
 	public static boolean isPrime(int n) {
-		String s = "";
-		s += n;
-		MPInt p = new MPInt(s);
-		return p.isProbablePrime(25);
+		return PrimalityTester.isPrime(n);
 	}
 
 	/**
@@ -812,17 +1157,66 @@ public final class MPInt {
 		return b;
 	}
 
+	/**
+	 * gcd(a, b) (binary GCD)
+	 * 
+	 * @param a first parameter
+	 * @param b second parameter
+	 * @return gcd(|a|, |b|)
+	 */
 	public static MPInt gcd(MPInt a, MPInt b) {
-		MPInt[] ret = MPInt.exgcd(a, b);
-		return ret[0];
+		MutableMPInt g = new MutableMPInt();
+
+		g.gcdInto(new MutableMPInt(a.abs()), new MutableMPInt(b.abs()));
+		return g.toMPInt();
+	}
+
+	/**
+	 * a^-1 mod m (Lehmer's extended GCD)
+	 * 
+	 * @param a the value
+	 * @param m the modulus (> 0)
+	 * @return a^-1 mod m
+	 */
+	public static MPInt modInverse(MPInt a, MPInt m) {
+		if (m.signum() <= 0) {
+			throw new ArithmeticException("Modulus not positive.");
+		}
+		MutableMPInt r = new MutableMPInt();
+
+		r.modInverseInto(new MutableMPInt(a.mod(m)), new MutableMPInt(m));
+		return r.toMPInt();
 	}
-	
+
 	/**
 	 * exgcd(a, b) 
 	 * Extended Eucrid algorithm Return gcd(a, b), and S and T such
 	 * that g = as + bt.
+	 * Non-negative arguments are processed by Lehmer's algorithm.
 	 */
 	public static MPInt[] exgcd(MPInt a, MPInt b) {
+		if (a.signum() < 0 || b.signum() < 0) {
+			return exgcdEuclid(a, b);
+		}
+		MutableMPInt u = new MutableMPInt(a);
+		MutableMPInt v = new MutableMPInt(b);
+		MutableMPInt s = new MutableMPInt(1L);
+		boolean neg = MutableMPInt.lehmer(u, v, s, new MutableMPInt(), false,
+				new MutableMPInt());
+		MPInt[] ret = new MPInt[3];
+
+		ret[0] = u.toMPInt();
+		ret[1] = neg ? s.toMPInt().negate() : s.toMPInt();
+		if (isZero(b)) {
+			ret[2] = ZERO;
+		} else {
+			ret[2] = ret[0].subtract(ret[1].multiply(a)).divide(b);
+		}
+
+		return ret;
+	}
+
+	private static MPInt[] exgcdEuclid(MPInt a, MPInt b) {
 		MPInt s0;
 		MPInt s1;
 		MPInt t;
@@ -920,6 +1314,21 @@ public final class MPInt {
 	 * @param byteLen the length to be converted
 	 */
 	public static byte[] toFixedBytes(MPInt x, int byteLen) {
+		byte[] result = new byte[byteLen];
+
+		toFixedBytes(x, result, 0, byteLen);
+		return result;
+	}
+
+	/**
+	 * Converts to a Fixed Length Byte String (into dst[off..off+byteLen)).
+	 * 
+	 * @param x the MPInt value
+	 * @param dst the output area
+	 * @param off the output offset
+	 * @param byteLen the length to be converted
+	 */
+	public static void toFixedBytes(MPInt x, byte[] dst, int off, int byteLen) {
 
 		if (x.signum() != 1) {
 			throw new IllegalArgumentException("MPInt not positive.");
@@ -936,11 +1345,75 @@ public final class MPInt {
 			throw new IllegalArgumentException("MPInt too large.");
 		}
 
-		byte[] result = new byte[byteLen];
-		int resOff = byteLen - xLen;
+		int resOff = off + byteLen - xLen;
 
-		System.arraycopy(xb, xOff, result, resOff, xLen);
-		return result;
+		Arrays.fill(dst, off, resOff, (byte) 0);
+		System.arraycopy(xb, xOff, dst, resOff, xLen);
+	}
+
+	/**
+	 * Converts to a Fixed Length Byte String (at the buffer position).
+	 * 
+	 * @param x the MPInt value
+	 * @param dst the output buffer (heap or direct)
+	 * @param byteLen the length to be converted
+	 */
+	public static void toFixedBytes(MPInt x, ByteBuffer dst, int byteLen) {
+		int pos = dst.position();
+
+		if (dst.hasArray()) {
+			if (dst.remaining() < byteLen) {
+				throw new IllegalArgumentException("Buffer too short.");
+			}
+			toFixedBytes(x, dst.array(), dst.arrayOffset() + pos, byteLen);
+			dst.position(pos + byteLen);
+			return;
+		}
+
+		if (x.signum() != 1) {
+			throw new IllegalArgumentException("MPInt not positive.");
+		}
+
+		byte[] xb = x.toByteArray();
+		int xOff = (xb[0] == 0) ? 1 : 0;
+		int xLen = xb.length - xOff;
+
+		if (xLen > byteLen) {
+			throw new IllegalArgumentException("MPInt too large.");
+		}
+		if (dst.remaining() < byteLen) {
+			throw new IllegalArgumentException("Buffer too short.");
+		}
+		for (int i = xLen; i < byteLen; i++) {
+			dst.put((byte) 0);
+		}
+		dst.put(xb, xOff, xLen);
+	}
+
+	/**
+	 * Converts a byte string to a non-negative MPInt (reads len bytes at
+	 * the buffer position).
+	 * 
+	 * @param src the input buffer (heap or direct)
+	 * @param len the length of the byte string
+	 */
+	public static MPInt fromBytes(ByteBuffer src, int len) {
+		if (src.remaining() < len) {
+			throw new BufferUnderflowException();
+		}
+
+		int pos = src.position();
+		MPInt x;
+
+		if (src.hasArray()) {
+			x = new MPInt(1, src.array(), src.arrayOffset() + pos, len);
+			src.position(pos + len);
+		} else {
+			byte[] b = new byte[len];
+			src.get(b);
+			x = new MPInt(1, b);
+		}
+		return x;
 	}
 
 	/**
@@ -962,6 +1435,45 @@ public final class MPInt {
 		return tmp;
 	}
 
+	/**
+	 * Converts an integer to an octet string according to P1363
+	 * (into dst at off).
+	 * 
+	 * @param bi an integer
+	 * @param dst the output area
+	 * @param off the output offset
+	 * @return the length of the octet string
+	 */
+	public static int i2OSP(MPInt bi, byte[] dst, int off) {
+		byte[] result = bi.abs().toByteArray();
+
+		// skip the sign byte
+		int rOff = ((bi.bitLength() & 7) != 0) ? 0 : 1;
+		int len = result.length - rOff;
+
+		System.arraycopy(result, rOff, dst, off, len);
+		return len;
+	}
+
+	/**
+	 * Converts an integer to an octet string according to P1363
+	 * (at the buffer position).
+	 * 
+	 * @param bi an integer
+	 * @param dst the output buffer (heap or direct)
+	 * @return the length of the octet string
+	 */
+	public static int i2OSP(MPInt bi, ByteBuffer dst) {
+		byte[] result = bi.abs().toByteArray();
+
+		// skip the sign byte
+		int rOff = ((bi.bitLength() & 7) != 0) ? 0 : 1;
+		int len = result.length - rOff;
+
+		dst.put(result, rOff, len);
+		return len;
+	}
+
 	/**
 	 * Converts an octet string to an integer according to P1363.
 	 * 
@@ -5,7 +5,10 @@
  */
 package Blanclux.crypto;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.security.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MessageEncode Class
@@ -27,6 +30,11 @@ public abstract class MessageEncode {
 	/** Digest Length */
 	protected int digestLen;
 
+	/** algorithm name -> constructor */
+	private static final ConcurrentHashMap<String,
+		Constructor<? extends MessageEncode>> registry =
+		new ConcurrentHashMap<String, Constructor<? extends MessageEncode>>();
+
 	/**
      * MessageEncode
      */
@@ -106,9 +114,25 @@ public abstract class MessageEncode {
 		return digest;
 	}
 
+	/**
+     * Clears the per-message state (parameter, encoded length) and
+     * resets the MessageDigest.  The digest and the objects set by
+     * init are kept.
+     */
+	public void reset() {
+		parameter = null;
+		encLen = 0;
+		if (digest != null) {
+			digest.reset();
+		}
+	}
+
 	/**
      * Generates a MessageEncode object that implements the algorithm
      * requested.
+     * <p>
+     * The class Blanclux.crypto.encode.&lt;algorithm&gt; is looked up once;
+     * its constructor is cached for later calls.
      *
      * @param algorithm the standard string name of the algorithm.
      * @return the new MessageEncode object.
@@ -116,17 +140,39 @@ public abstract class MessageEncode {
      */
 	public static MessageEncode getInstance(String algorithm)
 									 throws NoSuchAlgorithmException {
+		Constructor<? extends MessageEncode> ctor = registry.get(algorithm);
+
+		if (ctor == null) {
+			ctor = lookup(algorithm);
+			registry.putIfAbsent(algorithm, ctor);
+		}
+		try {
+			return ctor.newInstance();
+		} catch (InstantiationException e) {
+			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
+						 + algorithm + " cannot be instantiated.\n");
+		} catch (IllegalAccessException e) {
+			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
+						 + algorithm + " cannot be accessed.\n");
+		} catch (InvocationTargetException e) {
+			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
+						 + algorithm + " cannot be instantiated.\n");
+		}
+	}
+
+	private static Constructor<? extends MessageEncode> lookup(String algorithm)
+									 throws NoSuchAlgorithmException {
 		try {
 			Class<?> c = Class.forName("Blanclux.crypto.encode." + algorithm);
 
-			return (MessageEncode) c.newInstance();
+			return c.asSubclass(MessageEncode.class).getConstructor();
 		} catch (ClassNotFoundException e) {
 			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
 						 + algorithm + " cannot be found.\n");
-		} catch (InstantiationException e) {
+		} catch (ClassCastException e) {
 			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
-						 + algorithm + " cannot be instantiated.\n");
-		} catch (IllegalAccessException e) {
+						 + algorithm + " is not a MessageEncode.\n");
+		} catch (NoSuchMethodException e) {
 			throw new NoSuchAlgorithmException("Class Blanclux.crypto.encode."
 						 + algorithm + " cannot be accessed.\n");
 		}
@@ -0,0 +1,196 @@
+/**
+ * ModSqrtContext.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+
+/**
+ * Modular square roots for a fixed prime p
+ * <p>
+ * The method is chosen once per prime: a^((p+1)/4) for p = 3 (mod 4),
+ * Atkin's method for p = 5 (mod 8) and Tonelli-Shanks otherwise.  The
+ * 2-adic decomposition p - 1 = 2^s * q, the exponents and, for
+ * Tonelli-Shanks, the non-residue power z^q are computed in the
+ * constructor and reused by every call.
+ */
+public final class ModSqrtContext {
+	private static final int MODE_TWO = 0;
+	private static final int MODE_3MOD4 = 1;
+	private static final int MODE_5MOD8 = 2;
+	private static final int MODE_TS = 3;
+
+	/** bound of the non-residue search */
+	private static final int MAX_NONRESIDUE = 1 << 16;
+
+	private final MPInt modulus;
+	private final BigInteger p;
+	private final int mode;
+
+	/** p - 1 = 2^s * q (q odd) */
+	private final int s;
+
+	/** (p+1)/4, (p-5)/8 or (q-1)/2 */
+	private final BigInteger exp;
+
+	/** z^q (Tonelli-Shanks) */
+	private final BigInteger zq;
+
+	/**
+	 * Constructor
+	 *
+	 * @param p the prime modulus
+	 */
+	public ModSqrtContext(MPInt p) {
+		BigInteger bp = p.bigInt;
+
+		if (bp.compareTo(BigInteger.TWO) < 0) {
+			throw new ArithmeticException("Modulus not prime.");
+		}
+		this.modulus = p;
+		this.p = bp;
+
+		BigInteger p1 = bp.subtract(BigInteger.ONE);
+		BigInteger z = null;
+		int t = p1.getLowestSetBit();
+
+		if (bp.equals(BigInteger.TWO)) {
+			mode = MODE_TWO;
+			exp = null;
+		} else if (t == 1) {
+			mode = MODE_3MOD4;
+			exp = bp.add(BigInteger.ONE).shiftRight(2);
+		} else if (t == 2) {
+			mode = MODE_5MOD8;
+			exp = bp.subtract(BigInteger.valueOf(5)).shiftRight(3);
+		} else {
+			mode = MODE_TS;
+			exp = p1.shiftRight(t + 1);
+			z = nonResidue(p);
+		}
+		s = t;
+		zq = (z == null) ? null : z.modPow(p1.shiftRight(t), bp);
+	}
+
+	/**
+	 * Gets the modulus
+	 */
+	public MPInt getModulus() {
+		return modulus;
+	}
+
+	/**
+	 * x^2 = a (mod p)
+	 *
+	 * @param a the MPInt a
+	 * @return a MPInt x such that x^2 = a mod p
+	 * @throws ArithmeticException a is not a quadratic residue
+	 */
+	public MPInt sqrt(MPInt a) {
+		BigInteger x = root(a.bigInt.mod(p));
+
+		if (x == null) {
+			throw new ArithmeticException("Not a quadratic residue.");
+		}
+		return new MPInt(x);
+	}
+
+	/**
+	 * x[i]^2 = a[i] (mod p)
+	 *
+	 * @param a the MPInt values
+	 * @return the square roots (null for a quadratic non-residue)
+	 */
+	public MPInt[] sqrt(MPInt[] a) {
+		MPInt[] ret = new MPInt[a.length];
+
+		for (int i = 0; i < a.length; i++) {
+			BigInteger x = root(a[i].bigInt.mod(p));
+			ret[i] = (x == null) ? null : new MPInt(x);
+		}
+		return ret;
+	}
+
+	/**
+	 * square root of a (0 <= a < p), or null
+	 */
+	private BigInteger root(BigInteger a) {
+		if (a.signum() == 0 || mode == MODE_TWO) {
+			return a;
+		}
+
+		BigInteger x;
+		switch (mode) {
+		case MODE_3MOD4:
+			x = a.modPow(exp, p);
+			break;
+
+		case MODE_5MOD8: {
+			// b = (2a)^((p-5)/8), i = 2ab^2, x = ab(i-1)
+			BigInteger a2 = a.shiftLeft(1).mod(p);
+			BigInteger b = a2.modPow(exp, p);
+			BigInteger ab = a.multiply(b).mod(p);
+			BigInteger i = a2.multiply(b).mod(p).multiply(b).mod(p);
+			x = ab.multiply(i.subtract(BigInteger.ONE)).mod(p);
+			break;
+		}
+
+		default:
+			return tonelliShanks(a);
+		}
+
+		// a was a non-residue
+		if (!x.multiply(x).mod(p).equals(a)) {
+			return null;
+		}
+		return x;
+	}
+
+	private BigInteger tonelliShanks(BigInteger a) {
+		// w = a^((q-1)/2), x = a^((q+1)/2), t = a^q
+		BigInteger w = a.modPow(exp, p);
+		BigInteger x = a.multiply(w).mod(p);
+		BigInteger t = x.multiply(w).mod(p);
+		BigInteger c = zq;
+		int m = s;
+
+		while (!t.equals(BigInteger.ONE)) {
+			// least i with t^(2^i) = 1
+			int i = 0;
+			BigInteger u = t;
+			do {
+				u = u.multiply(u).mod(p);
+				i++;
+			} while (!u.equals(BigInteger.ONE) && i < m);
+			if (i == m) {
+				return null;
+			}
+
+			// b = c^(2^(m-i-1))
+			BigInteger b = c;
+			for (int j = 0; j < m - i - 1; j++) {
+				b = b.multiply(b).mod(p);
+			}
+			x = x.multiply(b).mod(p);
+			c = b.multiply(b).mod(p);
+			t = t.multiply(c).mod(p);
+			m = i;
+		}
+		return x;
+	}
+
+	private static BigInteger nonResidue(MPInt p) {
+		for (int z = 2; z < MAX_NONRESIDUE; z++) {
+			int j = MPInt.jacobi(MPInt.valueOf(z), p);
+			if (j == -1) {
+				return BigInteger.valueOf(z);
+			}
+			if (j == 0) {
+				break;
+			}
+		}
+		throw new ArithmeticException("Modulus not prime.");
+	}
+}
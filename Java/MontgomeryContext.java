@@ -0,0 +1,114 @@
+/**
+ * MontgomeryContext.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+
+/**
+ * Montgomery arithmetic for a fixed odd modulus
+ * <p>
+ * The constants R = 2^(32k) >= n, -n^-1 mod R and R mod n are computed
+ * once in the constructor.  They serve the BigInteger Montgomery form
+ * (toMont/montMul/fromMont) of the fixed-base tables and the
+ * multi-exponentiation, which reuse one context for many products.
+ * <p>
+ * A single exponentiation has no entry here: MPInt.modPow(exponent,
+ * modulus) deliberately does not use a context.  BigInteger.modPow runs
+ * its Montgomery multiply/square loops as HotSpot intrinsics, and a
+ * window ladder over this context measured 3-4 times slower
+ * (1024-3072 bits).
+ * The context is immutable and can be shared between threads.
+ */
+public final class MontgomeryContext {
+
+	/** modulus */
+	private final MPInt modulus;
+
+	/** R = 2^rBits */
+	private final int rBits;
+
+	/** R - 1 */
+	private final BigInteger rMask;
+
+	/** -n^-1 mod R */
+	private final BigInteger nPrime;
+
+	/** R mod n (1 in Montgomery form) */
+	private final BigInteger rModN;
+
+	/**
+	 * Constructor
+	 *
+	 * @param modulus the odd modulus (> 1)
+	 */
+	public MontgomeryContext(MPInt modulus) {
+		if (modulus.signum() <= 0 || !modulus.testBit(0)
+				|| MPInt.isOne(modulus)) {
+			throw new ArithmeticException("Modulus not odd.");
+		}
+		this.modulus = modulus;
+
+		BigInteger m = modulus.bigInt;
+		rBits = 32 * ((modulus.bitLength() + 31) >>> 5);
+		BigInteger r = BigInteger.ONE.shiftLeft(rBits);
+		rMask = r.subtract(BigInteger.ONE);
+		nPrime = m.negate().modInverse(r);
+		rModN = r.mod(m);
+	}
+
+	/**
+	 * Gets the modulus
+	 */
+	public MPInt getModulus() {
+		return modulus;
+	}
+
+	/**
+	 * Converts to Montgomery form (BigInteger, a * R mod n).
+	 */
+	BigInteger toMont(BigInteger a) {
+		return a.shiftLeft(rBits).mod(modulus.bigInt);
+	}
+
+	/**
+	 * Converts from Montgomery form (BigInteger).
+	 */
+	BigInteger fromMont(BigInteger a) {
+		return redc(a);
+	}
+
+	/**
+	 * 1 in Montgomery form (BigInteger)
+	 */
+	BigInteger montOne() {
+		return rModN;
+	}
+
+	/**
+	 * Montgomery multiplication (BigInteger)
+	 * a * b * R^-1 mod n
+	 * <p>
+	 * The reduction uses only multiply/and/shift, so it avoids the
+	 * long division of BigInteger.mod.
+	 */
+	BigInteger montMul(BigInteger a, BigInteger b) {
+		return redc(a.multiply(b));
+	}
+
+	/**
+	 * Montgomery reduction t * R^-1 mod n (0 <= t < n * R)
+	 */
+	BigInteger redc(BigInteger t) {
+		BigInteger n = modulus.bigInt;
+		BigInteger m = t.and(rMask).multiply(nPrime).and(rMask);
+		BigInteger u = t.add(m.multiply(n)).shiftRight(rBits);
+
+		if (u.compareTo(n) >= 0) {
+			u = u.subtract(n);
+		}
+		return u;
+	}
+}
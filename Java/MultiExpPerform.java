@@ -0,0 +1,103 @@
+/**
+ * MultiExpPerform.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.tools;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+import Blanclux.math.*;
+import Blanclux.util.Stopw;
+
+/**
+ * Multi-exponentiation performance
+ *  naive (separate modPow) vs. interleaved sliding window
+ */
+public class MultiExpPerform {
+	private static int[] modLens = { 1024, 2048, 3072, 4096 };
+	private static int bases = 2;
+	private static int count = 20;
+
+	/**
+	 * Usage : [bases [count [modLength ...]]]
+	 */
+	public static void main(String[] args) {
+
+		if (args.length >= 1) {
+			bases = Integer.parseInt(args[0]);
+		}
+		if (args.length >= 2) {
+			count = Integer.parseInt(args[1]);
+		}
+		if (args.length >= 3) {
+			modLens = new int[args.length - 2];
+			for (int i = 2; i < args.length; i++) {
+				modLens[i - 2] = Integer.parseInt(args[i]);
+			}
+		}
+
+		System.out.print("*** Multi-Exponentiation Performance Test [");
+		System.out.println(Calendar.getInstance(
+							TimeZone.getDefault()).getTime() + "] ***");
+		System.out.println("Bases : " + bases);
+		System.out.println("Loop : " + count + "\n");
+
+		SecureRandom rng = new SecureRandom();
+		for (int i = 0; i < modLens.length; i++) {
+			doTest(modLens[i], rng);
+		}
+	}
+
+	private static void doTest(int bits, SecureRandom rng) {
+		MPInt p = new MPInt(bits, rng).setBit(bits - 1).setBit(0);
+		MontgomeryContext ctx = new MontgomeryContext(p);
+		MPInt[] b = new MPInt[bases];
+		MPInt[] e = new MPInt[bases];
+
+		for (int i = 0; i < bases; i++) {
+			b[i] = MPInt.random(rng, p);
+			e[i] = new MPInt(bits, rng);
+		}
+
+		Stopw sw = new Stopw(2);
+		MPInt r1 = null;
+		MPInt r2 = null;
+
+		// warm up
+		naive(b, e, p);
+		MPInt.multiModPow(b, e, ctx);
+
+		sw.start(0);
+		for (int i = 0; i < count; i++) {
+			r1 = naive(b, e, p);
+		}
+		sw.stop(0);
+
+		sw.start(1);
+		for (int i = 0; i < count; i++) {
+			r2 = MPInt.multiModPow(b, e, ctx);
+		}
+		sw.stop(1);
+
+		if (!r1.equals(r2)) {
+			System.err.println("MultiExpPerform: result mismatch");
+			return;
+		}
+		System.out.println("Modulus : " + bits + " bits");
+		System.out.println("  naive       = "
+					+ (float) sw.getTime(0) / (float) count + " msec");
+		System.out.println("  interleaved = "
+					+ (float) sw.getTime(1) / (float) count + " msec");
+	}
+
+	private static MPInt naive(MPInt[] b, MPInt[] e, MPInt p) {
+		MPInt t = MPInt.ONE;
+
+		for (int i = 0; i < b.length; i++) {
+			t = t.multiply(b[i].modPow(e[i], p)).mod(p);
+		}
+		return t;
+	}
+}
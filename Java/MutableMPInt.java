@@ -0,0 +1,912 @@
+/**
+ * MutableMPInt.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+
+/**
+ * Mutable non-negative multi-precision integer
+ * <p>
+ * The magnitude is kept in an int[] of 32-bit limbs (least significant
+ * limb first).  All operations write their result into <code>this</code>
+ * and reuse the limb array, so loops of modular arithmetic can run
+ * without allocating a new object per step.  The array grows only when
+ * a result does not fit.
+ */
+public final class MutableMPInt {
+	private static final long LONG_MASK = 0xffffffffL;
+
+	/** limbs (little endian) */
+	int[] value;
+
+	/** number of used limbs (value[len - 1] != 0, or len == 0) */
+	int len;
+
+	/** scratch area for multiplication and division */
+	private int[] work;
+	private int[] rem;
+
+	/** temporaries of gcdInto and modInverseInto (kept between calls) */
+	private MutableMPInt[] temps;
+
+	/**
+	 * Constructor (value = 0)
+	 */
+	public MutableMPInt() {
+		value = new int[8];
+		len = 0;
+	}
+
+	/**
+	 * Constructor (value = 0)
+	 *
+	 * @param capacity the initial number of 32-bit limbs
+	 */
+	public MutableMPInt(int capacity) {
+		value = new int[Math.max(capacity, 1)];
+		len = 0;
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param val the non-negative initial value
+	 */
+	public MutableMPInt(long val) {
+		value = new int[8];
+		setValue(val);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param val the non-negative initial value
+	 */
+	public MutableMPInt(MPInt val) {
+		value = new int[8];
+		set(val);
+	}
+
+	/**
+	 * Constructor (copy)
+	 *
+	 * @param val the initial value
+	 */
+	public MutableMPInt(MutableMPInt val) {
+		value = new int[Math.max(val.len, 8)];
+		set(val);
+	}
+
+	/**
+	 * Sets a long value.
+	 *
+	 * @param val the non-negative value
+	 */
+	public MutableMPInt setValue(long val) {
+		if (val < 0) {
+			throw new ArithmeticException("MutableMPInt not positive.");
+		}
+		ensureCapacity(2);
+		value[0] = (int) val;
+		value[1] = (int) (val >>> 32);
+		len = 2;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * Sets a MPInt value.
+	 *
+	 * @param val the non-negative value
+	 */
+	public MutableMPInt set(MPInt val) {
+		BigInteger b = val.bigInt;
+
+		if (b.signum() < 0) {
+			throw new ArithmeticException("MutableMPInt not positive.");
+		}
+		int n = (b.bitLength() + 31) >>> 5;
+		ensureCapacity(n);
+		byte[] bytes = b.toByteArray();
+		int bl = bytes.length;
+
+		for (int i = 0; i < n; i++) {
+			int w = 0;
+			int pos = bl - 1 - 4 * i;
+			for (int j = 0; j < 4 && pos - j >= 0; j++) {
+				w |= (bytes[pos - j] & 0xff) << (8 * j);
+			}
+			value[i] = w;
+		}
+		len = n;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * Copies a MutableMPInt value.
+	 *
+	 * @param val the value
+	 */
+	public MutableMPInt set(MutableMPInt val) {
+		if (val != this) {
+			ensureCapacity(val.len);
+			System.arraycopy(val.value, 0, value, 0, val.len);
+			len = val.len;
+		}
+		return this;
+	}
+
+	public void setZero() {
+		len = 0;
+	}
+
+	public void setOne() {
+		value[0] = 1;
+		len = 1;
+	}
+
+	public boolean isZero() {
+		return len == 0;
+	}
+
+	public boolean isOne() {
+		return len == 1 && value[0] == 1;
+	}
+
+	public boolean isOdd() {
+		return len != 0 && (value[0] & 1) != 0;
+	}
+
+	public boolean isEven() {
+		return !isOdd();
+	}
+
+	public boolean testBit(int n) {
+		int w = n >>> 5;
+		if (w >= len) {
+			return false;
+		}
+		return (value[w] & (1 << (n & 31))) != 0;
+	}
+
+	public int bitLength() {
+		if (len == 0) {
+			return 0;
+		}
+		return (len << 5) - Integer.numberOfLeadingZeros(value[len - 1]);
+	}
+
+	public int getLowestSetBit() {
+		for (int i = 0; i < len; i++) {
+			if (value[i] != 0) {
+				return (i << 5) + Integer.numberOfTrailingZeros(value[i]);
+			}
+		}
+		return -1;
+	}
+
+	public int intValue() {
+		return len == 0 ? 0 : value[0];
+	}
+
+	public long longValue() {
+		long v = 0;
+		if (len > 0) {
+			v = value[0] & LONG_MASK;
+		}
+		if (len > 1) {
+			v |= ((long) value[1]) << 32;
+		}
+		return v;
+	}
+
+	public int compareTo(MutableMPInt other) {
+		if (len != other.len) {
+			return len < other.len ? -1 : 1;
+		}
+		for (int i = len - 1; i >= 0; i--) {
+			int a = value[i] + Integer.MIN_VALUE;
+			int b = other.value[i] + Integer.MIN_VALUE;
+			if (a != b) {
+				return a < b ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	public boolean equals(Object other) {
+		if (!(other instanceof MutableMPInt)) {
+			return false;
+		}
+		return compareTo((MutableMPInt) other) == 0;
+	}
+
+	public int hashCode() {
+		int h = 0;
+		for (int i = len - 1; i >= 0; i--) {
+			h = 31 * h + value[i];
+		}
+		return h;
+	}
+
+	/**
+	 * Converts to an immutable MPInt.
+	 */
+	public MPInt toMPInt() {
+		if (len == 0) {
+			return MPInt.ZERO;
+		}
+		byte[] bytes = new byte[len * 4 + 1];
+		int bl = bytes.length;
+		for (int i = 0; i < len; i++) {
+			int w = value[i];
+			bytes[bl - 1 - 4 * i] = (byte) w;
+			bytes[bl - 2 - 4 * i] = (byte) (w >>> 8);
+			bytes[bl - 3 - 4 * i] = (byte) (w >>> 16);
+			bytes[bl - 4 - 4 * i] = (byte) (w >>> 24);
+		}
+		return new MPInt(bytes);
+	}
+
+	public String toString() {
+		return toMPInt().toString();
+	}
+
+	public String toString(int radix) {
+		return toMPInt().toString(radix);
+	}
+
+	/**
+	 * this = a + b
+	 */
+	public MutableMPInt addInto(MutableMPInt a, MutableMPInt b) {
+		if (a.len < b.len) {
+			MutableMPInt t = a;
+			a = b;
+			b = t;
+		}
+		int al = a.len;
+		int bl = b.len;
+		ensureCapacity(al + 1);
+		int[] av = a.value;
+		int[] bv = b.value;
+		long carry = 0;
+		int i = 0;
+
+		for (; i < bl; i++) {
+			carry += (av[i] & LONG_MASK) + (bv[i] & LONG_MASK);
+			value[i] = (int) carry;
+			carry >>>= 32;
+		}
+		for (; i < al; i++) {
+			carry += av[i] & LONG_MASK;
+			value[i] = (int) carry;
+			carry >>>= 32;
+		}
+		value[al] = (int) carry;
+		len = al + 1;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * this = a - b (a >= b)
+	 */
+	public MutableMPInt subInto(MutableMPInt a, MutableMPInt b) {
+		if (a.compareTo(b) < 0) {
+			throw new ArithmeticException("MutableMPInt subtraction underflow.");
+		}
+		int al = a.len;
+		int bl = b.len;
+		ensureCapacity(al);
+		int[] av = a.value;
+		int[] bv = b.value;
+		long borrow = 0;
+		int i = 0;
+
+		for (; i < bl; i++) {
+			borrow = (av[i] & LONG_MASK) - (bv[i] & LONG_MASK) + borrow;
+			value[i] = (int) borrow;
+			borrow >>= 32;
+		}
+		for (; i < al; i++) {
+			borrow = (av[i] & LONG_MASK) + borrow;
+			value[i] = (int) borrow;
+			borrow >>= 32;
+		}
+		len = al;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * this = a * b
+	 */
+	public MutableMPInt mulInto(MutableMPInt a, MutableMPInt b) {
+		if (a.len == 0 || b.len == 0) {
+			len = 0;
+			return this;
+		}
+		int al = a.len;
+		int bl = b.len;
+		int rl = al + bl;
+		work = grow(work, rl);
+		int[] r = work;
+		int[] av = a.value;
+		int[] bv = b.value;
+
+		for (int i = 0; i < rl; i++) {
+			r[i] = 0;
+		}
+		for (int i = 0; i < al; i++) {
+			long ai = av[i] & LONG_MASK;
+			long carry = 0;
+			for (int j = 0; j < bl; j++) {
+				carry += ai * (bv[j] & LONG_MASK) + (r[i + j] & LONG_MASK);
+				r[i + j] = (int) carry;
+				carry >>>= 32;
+			}
+			r[i + bl] = (int) carry;
+		}
+
+		// swap result into place (a and b may alias this)
+		int[] t = value;
+		value = work;
+		work = t;
+		len = rl;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * this = a mod m
+	 */
+	public MutableMPInt modInto(MutableMPInt a, MutableMPInt m) {
+		if (m.len == 0) {
+			throw new ArithmeticException("MutableMPInt divide by zero.");
+		}
+		if (a.compareTo(m) < 0) {
+			return set(a);
+		}
+		if (m.len == 1) {
+			long d = m.value[0] & LONG_MASK;
+			long r = 0;
+			for (int i = a.len - 1; i >= 0; i--) {
+				r = Long.remainderUnsigned((r << 32) | (a.value[i] & LONG_MASK), d);
+			}
+			ensureCapacity(1);
+			value[0] = (int) r;
+			len = 1;
+			normalize();
+			return this;
+		}
+		divmod(a, m, null);
+		return this;
+	}
+
+	/**
+	 * this = a mod m, q = a / m
+	 *
+	 * @param a the dividend
+	 * @param m the divisor
+	 * @param q the quotient (must not be this)
+	 */
+	public MutableMPInt divInto(MutableMPInt a, MutableMPInt m, MutableMPInt q) {
+		if (q == this) {
+			throw new IllegalArgumentException("q must not be this.");
+		}
+		if (m.len == 0) {
+			throw new ArithmeticException("MutableMPInt divide by zero.");
+		}
+		if (a.compareTo(m) < 0) {
+			q.setZero();
+			return set(a);
+		}
+		if (m.len == 1) {
+			long d = m.value[0] & LONG_MASK;
+			long r = 0;
+			int al = a.len;
+			q.ensureCapacity(al);
+			for (int i = al - 1; i >= 0; i--) {
+				long num = (r << 32) | (a.value[i] & LONG_MASK);
+				q.value[i] = (int) Long.divideUnsigned(num, d);
+				r = Long.remainderUnsigned(num, d);
+			}
+			q.len = al;
+			q.normalize();
+			ensureCapacity(1);
+			value[0] = (int) r;
+			len = 1;
+			normalize();
+			return this;
+		}
+		divmod(a, m, q);
+		return this;
+	}
+
+	/**
+	 * this = a * c
+	 *
+	 * @param a the value
+	 * @param c the non-negative multiplier
+	 */
+	public MutableMPInt mulInto(MutableMPInt a, long c) {
+		if (a.len == 0 || c == 0) {
+			len = 0;
+			return this;
+		}
+		int al = a.len;
+		work = grow(work, al + 2);
+		int[] r = work;
+		int[] av = a.value;
+		long c0 = c & LONG_MASK;
+		long c1 = c >>> 32;
+		long carry = 0;
+
+		for (int i = 0; i < al; i++) {
+			carry += (av[i] & LONG_MASK) * c0;
+			r[i] = (int) carry;
+			carry >>>= 32;
+		}
+		r[al] = (int) carry;
+		r[al + 1] = 0;
+		if (c1 != 0) {
+			carry = 0;
+			for (int i = 0; i < al; i++) {
+				carry += (av[i] & LONG_MASK) * c1 + (r[i + 1] & LONG_MASK);
+				r[i + 1] = (int) carry;
+				carry >>>= 32;
+			}
+			r[al + 1] = (int) carry;
+		}
+
+		int[] t = value;
+		value = work;
+		work = t;
+		len = al + 2;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * this = gcd(a, b) (binary GCD)
+	 * <p>
+	 * Operands of very different length are first balanced with a
+	 * remainder step; the last steps run on long values.  The
+	 * temporaries are kept in this object, so repeated calls on the same
+	 * object do not allocate once the limbs are large enough.
+	 */
+	public MutableMPInt gcdInto(MutableMPInt a, MutableMPInt b) {
+		if (a.len == 0) {
+			return set(b);
+		}
+		if (b.len == 0) {
+			return set(a);
+		}
+		int cap = Math.max(a.len, b.len) + 1;
+		MutableMPInt u = temp(0, cap).set(a);
+		MutableMPInt v = temp(1, cap).set(b);
+		MutableMPInt t = temp(2, cap);
+		MutableMPInt x;
+
+		int uz = u.getLowestSetBit();
+		int k = Math.min(uz, v.getLowestSetBit());
+		u.shiftRightInPlace(uz);
+
+		// u is odd
+		while (v.len != 0) {
+			if (u.len <= 2 && v.len <= 2) {
+				u.setUnsigned(binaryGcd(u.longValue(), v.longValue()));
+				break;
+			}
+			if (v.len > u.len + 1) {
+				t.modInto(v, u);
+				x = v; v = t; t = x;
+				continue;
+			}
+			v.shiftRightInPlace(v.getLowestSetBit());
+			if (u.len > v.len + 1) {
+				t.modInto(u, v);
+				x = u; u = v; v = t; t = x;
+				continue;
+			}
+			if (u.compareTo(v) > 0) {
+				x = u; u = v; v = x;
+			}
+			v.subInto(v, u);
+		}
+
+		set(u);
+		return shiftLeftInPlace(k);
+	}
+
+	/**
+	 * this = a^-1 mod m (Lehmer's extended GCD)
+	 * <p>
+	 * The temporaries are kept in this object as in gcdInto.
+	 *
+	 * @param a the value
+	 * @param m the modulus (> 0)
+	 */
+	public MutableMPInt modInverseInto(MutableMPInt a, MutableMPInt m) {
+		if (m.len == 0) {
+			throw new ArithmeticException("Modulus not positive.");
+		}
+		if (m.isOne()) {
+			len = 0;
+			return this;
+		}
+		int cap = m.len + 1;
+		MutableMPInt u = temp(0, cap).set(m);
+		MutableMPInt v = temp(1, cap);
+		MutableMPInt x0 = temp(2, cap).setValue(0);
+		MutableMPInt x1 = temp(3, cap).setValue(1);
+
+		v.modInto(a, m);
+		// cofactor of a: t0 = 0, t1 = 1
+		boolean neg = lehmer(u, v, x0, x1, true, this);
+
+		if (!u.isOne()) {
+			throw new ArithmeticException("MutableMPInt not invertible.");
+		}
+		x1.modInto(x0, m);
+		if (neg && x1.len != 0) {
+			return subInto(m, x1);
+		}
+		return set(x1);
+	}
+
+	/**
+	 * Lehmer's extended GCD
+	 * <p>
+	 * The Euclidean steps are simulated on the leading 62 bits of u and v
+	 * (Collins' condition) and applied as one 2x2 matrix of word-size
+	 * cofactors; only when no step can be taken a full division is done.
+	 * The cofactors x_i of the remainder sequence alternate in sign, so
+	 * only their magnitudes are kept.
+	 *
+	 * @param u in: r0 / out: gcd
+	 * @param v in: r1 (destroyed)
+	 * @param x0 in: |x of r0| / out: |x of gcd|
+	 * @param x1 in: |x of r1| (destroyed)
+	 * @param neg0 sign of x0 (true: negative)
+	 * @param owner the object whose temporaries are used
+	 *        (not one of u, v, x0, x1)
+	 * @return the sign of the resulting x0 (true: negative)
+	 */
+	static boolean lehmer(MutableMPInt u, MutableMPInt v, MutableMPInt x0,
+			MutableMPInt x1, boolean neg0, MutableMPInt owner) {
+		MutableMPInt resU = u;
+		MutableMPInt resX = x0;
+		int cap = Math.max(u.len, v.len) + 3;
+		MutableMPInt t1 = owner.temp(4, cap);
+		MutableMPInt t2 = owner.temp(5, cap);
+		MutableMPInt t3 = owner.temp(6, cap);
+		MutableMPInt t4 = owner.temp(7, cap);
+		MutableMPInt q = owner.temp(8, cap);
+		MutableMPInt x;
+
+		while (v.len != 0) {
+			int shift = Math.max(Math.max(u.bitLength(), v.bitLength()) - 62, 0);
+			long ah = u.bitsAt(shift);
+			long bh = v.bitsAt(shift);
+			long ca = 1, cb = 0, cc = 0, cd = 1;
+			int k = 0;
+
+			for (;;) {
+				if (bh + cc <= 0 || bh + cd <= 0) {
+					break;
+				}
+				long qh = (ah + ca) / (bh + cc);
+				if (qh != (ah + cb) / (bh + cd)) {
+					break;
+				}
+				long t = ca - qh * cc;
+				ca = cc;
+				cc = t;
+				t = cb - qh * cd;
+				cb = cd;
+				cd = t;
+				t = ah - qh * bh;
+				ah = bh;
+				bh = t;
+				k++;
+			}
+
+			if (cb == 0) {
+				// full division step
+				t1.divInto(u, v, q);
+				x = u; u = v; v = t1; t1 = x;
+				t2.mulInto(x1, q);
+				t2.addInto(t2, x0);
+				x = x0; x0 = x1; x1 = t2; t2 = x;
+				neg0 = !neg0;
+				continue;
+			}
+
+			long ua = Math.abs(ca), ub = Math.abs(cb);
+			long uc = Math.abs(cc), ud = Math.abs(cd);
+
+			// u' = |ca*u + cb*v|, v' = |cc*u + cd*v| (signs alternate)
+			t1.mulInto(u, ua);
+			t2.mulInto(v, ub);
+			if (t1.compareTo(t2) >= 0) {
+				t1.subInto(t1, t2);
+			} else {
+				t1.subInto(t2, t1);
+			}
+			t3.mulInto(u, uc);
+			t4.mulInto(v, ud);
+			if (t3.compareTo(t4) >= 0) {
+				t3.subInto(t3, t4);
+			} else {
+				t3.subInto(t4, t3);
+			}
+			x = u; u = t1; t1 = x;
+			x = v; v = t3; t3 = x;
+
+			// |x0'| = ua*|x0| + ub*|x1|, |x1'| = uc*|x0| + ud*|x1|
+			t2.mulInto(x0, ua);
+			t4.mulInto(x1, ub);
+			t2.addInto(t2, t4);
+			t4.mulInto(x0, uc);
+			q.mulInto(x1, ud);
+			t4.addInto(t4, q);
+			x = x0; x0 = t2; t2 = x;
+			x = x1; x1 = t4; t4 = x;
+			if ((k & 1) != 0) {
+				neg0 = !neg0;
+			}
+		}
+
+		if (resU != u) {
+			resU.set(u);
+		}
+		if (resX != x0) {
+			resX.set(x0);
+		}
+		return neg0;
+	}
+
+	/** i-th temporary with room for cap limbs */
+	private MutableMPInt temp(int i, int cap) {
+		if (temps == null) {
+			temps = new MutableMPInt[9];
+		}
+		MutableMPInt t = temps[i];
+		if (t == null) {
+			t = new MutableMPInt(cap);
+			temps[i] = t;
+		} else {
+			t.ensureCapacity(cap);
+		}
+		return t;
+	}
+
+	/** 62 bits from bit position shift */
+	long bitsAt(int shift) {
+		int w = shift >>> 5;
+		int b = shift & 31;
+		long r = 0;
+
+		if (w < len) {
+			r = (value[w] & LONG_MASK) >>> b;
+		}
+		if (w + 1 < len) {
+			r |= (value[w + 1] & LONG_MASK) << (32 - b);
+		}
+		if (b != 0 && w + 2 < len) {
+			r |= (value[w + 2] & LONG_MASK) << (64 - b);
+		}
+		return r & ((1L << 62) - 1);
+	}
+
+	/** gcd of two unsigned long values */
+	private static long binaryGcd(long a, long b) {
+		if (a == 0) {
+			return b;
+		}
+		if (b == 0) {
+			return a;
+		}
+		int k = Long.numberOfTrailingZeros(a | b);
+		a >>>= Long.numberOfTrailingZeros(a);
+		do {
+			b >>>= Long.numberOfTrailingZeros(b);
+			if (Long.compareUnsigned(a, b) > 0) {
+				long t = a;
+				a = b;
+				b = t;
+			}
+			b -= a;
+		} while (b != 0);
+		return a << k;
+	}
+
+	/** sets an unsigned long value */
+	private void setUnsigned(long val) {
+		ensureCapacity(2);
+		value[0] = (int) val;
+		value[1] = (int) (val >>> 32);
+		len = 2;
+		normalize();
+	}
+
+	/**
+	 * this = this >> n
+	 */
+	public MutableMPInt shiftRightInPlace(int n) {
+		int ws = n >>> 5;
+		int bs = n & 31;
+
+		if (ws >= len) {
+			len = 0;
+			return this;
+		}
+		int nl = len - ws;
+		if (bs == 0) {
+			System.arraycopy(value, ws, value, 0, nl);
+		} else {
+			for (int i = 0; i < nl - 1; i++) {
+				value[i] = (value[i + ws] >>> bs) | (value[i + ws + 1] << (32 - bs));
+			}
+			value[nl - 1] = value[len - 1] >>> bs;
+		}
+		len = nl;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * this = this << n
+	 */
+	public MutableMPInt shiftLeftInPlace(int n) {
+		if (len == 0) {
+			return this;
+		}
+		int ws = n >>> 5;
+		int bs = n & 31;
+		int nl = len + ws + 1;
+		ensureCapacity(nl);
+
+		if (bs == 0) {
+			System.arraycopy(value, 0, value, ws, len);
+			value[nl - 1] = 0;
+		} else {
+			value[nl - 1] = value[len - 1] >>> (32 - bs);
+			for (int i = len - 1; i > 0; i--) {
+				value[i + ws] = (value[i] << bs) | (value[i - 1] >>> (32 - bs));
+			}
+			value[ws] = value[0] << bs;
+		}
+		for (int i = 0; i < ws; i++) {
+			value[i] = 0;
+		}
+		len = nl;
+		normalize();
+		return this;
+	}
+
+	/**
+	 * Knuth Algorithm D, m.len >= 2, a >= m
+	 * (the quotient is stored in q unless q is null)
+	 */
+	private void divmod(MutableMPInt a, MutableMPInt m, MutableMPInt q) {
+		int n = m.len;
+		int shift = Integer.numberOfLeadingZeros(m.value[n - 1]);
+		int ul = a.len + 1;
+
+		// normalized divisor (kept in work)
+		work = grow(work, n);
+		int[] d = work;
+		shiftInto(m.value, n, shift, d);
+
+		// normalized dividend (kept in rem)
+		rem = grow(rem, ul);
+		int[] u = rem;
+		u[a.len] = shift == 0 ? 0 : a.value[a.len - 1] >>> (32 - shift);
+		shiftInto(a.value, a.len, shift, u);
+
+		long dh = d[n - 1] & LONG_MASK;
+		long dl = d[n - 2] & LONG_MASK;
+
+		if (q != null) {
+			q.ensureCapacity(ul - n);
+			q.len = ul - n;
+		}
+
+		for (int j = ul - n - 1; j >= 0; j--) {
+			long num = ((u[j + n] & LONG_MASK) << 32) | (u[j + n - 1] & LONG_MASK);
+			long qhat = Long.divideUnsigned(num, dh);
+			long rhat = Long.remainderUnsigned(num, dh);
+
+			while (qhat > LONG_MASK || Long.compareUnsigned(qhat * dl,
+					(rhat << 32) | (u[j + n - 2] & LONG_MASK)) > 0) {
+				qhat--;
+				rhat += dh;
+				if (rhat > LONG_MASK) {
+					break;
+				}
+			}
+
+			// u[j .. j+n] -= qhat * d
+			long borrow = 0;
+			long carry = 0;
+			for (int i = 0; i < n; i++) {
+				carry += qhat * (d[i] & LONG_MASK);
+				long t = (u[i + j] & LONG_MASK) - (carry & LONG_MASK) + borrow;
+				u[i + j] = (int) t;
+				borrow = t >> 32;
+				carry >>>= 32;
+			}
+			long t = (u[j + n] & LONG_MASK) - carry + borrow;
+			u[j + n] = (int) t;
+
+			if (t < 0) { // add back
+				long c = 0;
+				for (int i = 0; i < n; i++) {
+					c += (u[i + j] & LONG_MASK) + (d[i] & LONG_MASK);
+					u[i + j] = (int) c;
+					c >>>= 32;
+				}
+				u[j + n] += (int) c;
+				qhat--;
+			}
+			if (q != null) {
+				q.value[j] = (int) qhat;
+			}
+		}
+		if (q != null) {
+			q.normalize();
+		}
+
+		// remainder = u[0 .. n-1] >> shift
+		ensureCapacity(n);
+		if (shift == 0) {
+			System.arraycopy(u, 0, value, 0, n);
+		} else {
+			for (int i = 0; i < n - 1; i++) {
+				value[i] = (u[i] >>> shift) | (u[i + 1] << (32 - shift));
+			}
+			value[n - 1] = u[n - 1] >>> shift;
+		}
+		len = n;
+		normalize();
+	}
+
+	private static void shiftInto(int[] src, int n, int shift, int[] dst) {
+		if (shift == 0) {
+			System.arraycopy(src, 0, dst, 0, n);
+			return;
+		}
+		for (int i = n - 1; i > 0; i--) {
+			dst[i] = (src[i] << shift) | (src[i - 1] >>> (32 - shift));
+		}
+		dst[0] = src[0] << shift;
+	}
+
+	private void ensureCapacity(int n) {
+		if (value.length < n) {
+			int[] v = new int[Math.max(n, value.length * 2)];
+			System.arraycopy(value, 0, v, 0, len);
+			value = v;
+		}
+	}
+
+	private static int[] grow(int[] a, int n) {
+		if (a == null || a.length < n) {
+			return new int[Math.max(n, 8)];
+		}
+		return a;
+	}
+
+	private void normalize() {
+		while (len > 0 && value[len - 1] == 0) {
+			len--;
+		}
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * ParallelPrimeGenerator.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parallel prime generation
+ * <p>
+ * The candidate sequence of Prime.genPrimeRandom (random odd start, +-2
+ * steps with wrap around) is cut into chunks which are sieved and tested
+ * on a ForkJoinPool.  When a prime is found, chunks behind it are
+ * cancelled, but chunks in front of it are still completed, so the
+ * result is the first prime of the sequence: the same prime (and the
+ * same distribution) as the sequential search.
+ */
+public class ParallelPrimeGenerator {
+	private static final int RABIN_P = 20;
+
+	/** number of candidates per chunk */
+	private static final int CHUNK = 256;
+
+	/** minimum bit length for the parallel search */
+	private static final int MIN_BITS = 32;
+
+	private final SecureRandom rng;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Constructor (common pool)
+	 *
+	 * @param rng the random number generator
+	 */
+	public ParallelPrimeGenerator(SecureRandom rng) {
+		this(rng, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param rng the random number generator
+	 * @param pool the ForkJoinPool
+	 */
+	public ParallelPrimeGenerator(SecureRandom rng, ForkJoinPool pool) {
+		this.rng = rng;
+		this.pool = pool;
+	}
+
+	/**
+	 * Generation of random prime number
+	 *
+	 * @param bits the bit length of the prime number
+	 * @return the prime number
+	 */
+	public MPInt generate(int bits) {
+		if (bits <= 1) {
+			throw new IllegalArgumentException("Illegal bit length.");
+		}
+		if (bits < MIN_BITS) {
+			return new Prime(bits, rng).getPrime();
+		}
+		return pool.invoke(newSearch(bits));
+	}
+
+	/**
+	 * Generation of random prime number p = rem (mod m)
+	 *
+	 * @param bits the bit length of the prime number
+	 * @param rem the residue
+	 * @param m the modulus
+	 * @return the prime number
+	 */
+	public MPInt generate(int bits, int rem, int m) {
+		if (bits < MIN_BITS) {
+			MPInt p;
+			do {
+				p = new Prime(bits, rng).getPrime();
+			} while (p.mod(MPInt.valueOf(m)).intValue() != rem);
+			return p;
+		}
+		return pool.invoke(new Congruent(bits, rem, m));
+	}
+
+	/**
+	 * Generation of several random prime numbers p = rem (mod m)
+	 * The searches run concurrently.
+	 *
+	 * @param bits the bit length of the prime numbers
+	 * @param num the number of primes
+	 * @param rem the residue
+	 * @param m the modulus
+	 * @return the prime numbers
+	 */
+	public MPInt[] generate(int bits, int num, int rem, int m) {
+		MPInt[] ret = new MPInt[num];
+
+		if (bits < MIN_BITS) {
+			for (int i = 0; i < num; i++) {
+				ret[i] = generate(bits, rem, m);
+			}
+			return ret;
+		}
+
+		List<Congruent> tasks = new ArrayList<Congruent>();
+		for (int i = 0; i < num; i++) {
+			tasks.add(new Congruent(bits, rem, m));
+		}
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+		for (int i = 0; i < num; i++) {
+			ret[i] = tasks.get(i).join();
+		}
+		return ret;
+	}
+
+	/**
+	 * Draws a starting point in the same way as Prime.genPrimeRandom.
+	 */
+	private Search newSearch(int bits) {
+		int dir = rng.nextInt() & 1;
+		MPInt limit = MPInt.ZERO.setBit(bits).subtract(MPInt.ONE);
+		MPInt p = MPInt.random(rng, limit);
+
+		p = p.setBit(bits - 1);
+		p = p.setBit(0);
+
+		return new Search(p, bits, dir, pool.getParallelism());
+	}
+
+	/**
+	 * Search for a prime p = rem (mod m), retrying with new random starts
+	 */
+	private class Congruent extends RecursiveTask<MPInt> {
+		private static final long serialVersionUID = 1L;
+
+		private final int bits;
+		private final int rem;
+		private final int m;
+
+		Congruent(int bits, int rem, int m) {
+			this.bits = bits;
+			this.rem = rem;
+			this.m = m;
+		}
+
+		protected MPInt compute() {
+			MPInt mod = MPInt.valueOf(m);
+			for (;;) {
+				MPInt p = newSearch(bits).invoke();
+				if (p.mod(mod).intValue() == rem) {
+					return p;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Search for the first prime of a candidate sequence
+	 */
+	private static class Search extends RecursiveTask<MPInt> {
+		private static final long serialVersionUID = 1L;
+
+		/** lowest / highest candidate (2^(bits-1) + 1, 2^bits - 1) */
+		private final MPInt lo;
+		private final MPInt hi;
+
+		/** number of candidates in the range */
+		private final MPInt total;
+
+		/** position of the start in the range */
+		private final MPInt startPos;
+
+		/** direction (1: upward, -1: downward) */
+		private final int dir;
+
+		private final int workers;
+
+		/** next chunk index */
+		private final AtomicLong next = new AtomicLong();
+
+		/** sequence index of the first prime found so far */
+		private long found = Long.MAX_VALUE;
+		private MPInt prime;
+
+		Search(MPInt start, int bits, int dir, int workers) {
+			this.dir = (dir != 0) ? 1 : -1;
+			this.workers = Math.max(workers, 1);
+			lo = MPInt.ONE.setBit(bits - 1);
+			hi = MPInt.ZERO.setBit(bits).subtract(MPInt.ONE);
+			total = hi.subtract(lo).shiftRight(1).add(MPInt.ONE);
+			startPos = (this.dir > 0) ? start.subtract(lo).shiftRight(1)
+					: hi.subtract(start).shiftRight(1);
+		}
+
+		protected MPInt compute() {
+			List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+			for (int i = 0; i < workers; i++) {
+				tasks.add(new RecursiveAction() {
+					private static final long serialVersionUID = 1L;
+
+					protected void compute() {
+						work();
+					}
+				});
+			}
+			invokeAll(tasks);
+			return prime;
+		}
+
+		private synchronized long getFound() {
+			return found;
+		}
+
+		private synchronized void setFound(long t, MPInt p) {
+			if (t < found) {
+				found = t;
+				prime = p;
+			}
+		}
+
+		/**
+		 * Tests the claimed chunks.  The chunks a worker claims are
+		 * increasing, so one sieve per worker is moved forward from chunk
+		 * to chunk and rebuilt only at the wrap around.
+		 */
+		private void work() {
+			PrimeSieve sv = null;
+			long svT = 0;		// sequence index of the sieve base
+			long svLeft = 0;	// candidates from the base to the boundary
+
+			for (;;) {
+				long t0 = next.getAndIncrement() * CHUNK;
+				if (t0 >= getFound()) {
+					return;
+				}
+
+				long t = t0;
+				while (t < t0 + CHUNK) {
+					long gap = t - svT;
+					if (sv != null && gap < svLeft && gap < (1 << 29)) {
+						sv.advance((int) gap);
+					} else {
+						// position in the range and candidates before the boundary
+						MPInt pos = startPos.add(MPInt.valueOf(t)).mod(total);
+						MPInt left = total.subtract(pos);
+						MPInt base = (dir > 0) ? lo.add(pos.shiftLeft(1))
+								: hi.subtract(pos.shiftLeft(1));
+						if (sv == null) {
+							sv = new PrimeSieve(base, dir);
+						} else {
+							sv.reset(base);
+						}
+						gap = 0;
+						svLeft = (left.bitLength() < 63) ? left.longValue()
+								: Long.MAX_VALUE;
+					}
+					svT = t;
+					svLeft -= gap;
+
+					int count = (int) Math.min(t0 + CHUNK - t,
+											   Math.min(svLeft, CHUNK));
+					sv.sieve(count);
+					for (int j = 0; j < count; j++) {
+						if (t + j >= getFound()) {
+							return;
+						}
+						if (sv.isCandidate(j)) {
+							MPInt c = sv.candidate(j);
+							if (c.isProbablePrime(RABIN_P)) {
+								setFound(t + j, c);
+								return;
+							}
+						}
+					}
+					t += count;
+				}
+			}
+		}
+	}
+}
@@ -6,6 +6,7 @@
 package Blanclux.tools;
 
 import Blanclux.math.MPInt;
+import Blanclux.math.PrimalityTester;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -35,6 +36,9 @@ public class ParamGen {
 
 	private SecureRandom rnd = null;
 
+	/** Primality tester (FIPS 186-4 rounds followed by a Lucas test) */
+	private PrimalityTester tester;
+
 	/**
 	 * Constructor
 	 */
@@ -44,6 +48,7 @@ public class ParamGen {
 		m = mi;
 		L = Li;
 		this.rnd = rnd;
+		tester = new PrimalityTester(rnd);
 		System.out.println("*** FFC(Finite field cryptography) parameter generation ***");
 		System.out.println("p : " + L + " bits");
 		System.out.println("q : " + m + " bits");
@@ -101,7 +106,8 @@ public class ParamGen {
 				q = U.setBit(m - 1).setBit(0);
 				// 6. Use a robust primality algorithm to test whether q is prime.
 				// 7. If q is not prime then go to 4.
-				if (q.isProbablePrime(25)) {
+				if (tester.isProbablePrime(q,
+						PrimalityTester.fipsRounds(m, true), true)) {
 					break step4;
 				}
 			}
@@ -131,7 +137,8 @@ public class ParamGen {
 				// 16. If p > 2^(L-1) use a robust primality test to test
 				// whether p is prime. Else go to 18.
 				// 17. If p is prime output p, q, seed, counter and stop.
-				if (p.isProbablePrime(25)) {
+				if (tester.isProbablePrime(p,
+						PrimalityTester.fipsRounds(L, true), true)) {
 					break algorithm;
 				}
 				// 18. Set counter = counter + 1
@@ -0,0 +1,349 @@
+/**
+ * PrimalityTester.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+/**
+ * Probable prime tests
+ * <p>
+ * Miller-Rabin with a configurable number of rounds, the strong Lucas
+ * test (Selfridge method A), Baillie-PSW and a deterministic test for
+ * 64-bit values.  The number of rounds can be taken from FIPS 186-4
+ * Table C.1 (fipsRounds).
+ */
+public final class PrimalityTester {
+	/** small primes for trial division */
+	private static final int[] SMALL = { 3, 5, 7, 11, 13, 17, 19, 23, 29, 31,
+			37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97 };
+
+	/** 3 * 5 * ... * 47 and 53 * ... * 97 */
+	private static final long PROD1 = 307444891294245705L;
+	private static final long PROD2 = 3749562977351496827L;
+
+	/** Miller-Rabin bases deterministic for n < 2^64 */
+	private static final long[] BASES64 = { 2, 325, 9375, 28178, 450775,
+			9780504, 1795265022 };
+
+	private final SecureRandom rng;
+
+	/**
+	 * Constructor
+	 *
+	 * @param rng the random generator (Miller-Rabin bases)
+	 */
+	public PrimalityTester(SecureRandom rng) {
+		this.rng = (rng == null) ? new SecureRandom() : rng;
+	}
+
+	/**
+	 * Number of Miller-Rabin rounds (FIPS 186-4 Table C.1)
+	 *
+	 * @param bits the bit length of the candidate (p or q)
+	 * @param lucas true if a strong Lucas test follows
+	 * @return the number of rounds
+	 */
+	public static int fipsRounds(int bits, boolean lucas) {
+		if (bits <= 160) {
+			return lucas ? 19 : 40;		// q: 160
+		} else if (bits <= 224) {
+			return lucas ? 24 : 56;		// q: 224
+		} else if (bits <= 256) {
+			return lucas ? 27 : 64;		// q: 256
+		} else if (bits <= 1024) {
+			return lucas ? 3 : 40;		// p: 1024
+		} else if (bits <= 2048) {
+			return lucas ? 3 : 56;		// p: 2048
+		}
+		return lucas ? 2 : 64;			// p: 3072
+	}
+
+	/**
+	 * Probable prime test
+	 *
+	 * @param n the candidate
+	 * @param rounds the number of Miller-Rabin rounds (random bases)
+	 * @param lucas true: a strong Lucas test follows
+	 * @return true: probable prime / false: composite
+	 */
+	public boolean isProbablePrime(MPInt n, int rounds, boolean lucas) {
+		if (n.bitLength() < 64) {
+			return isPrime(n.longValue());
+		}
+		if (!n.testBit(0) || hasSmallFactor(n)) {
+			return false;
+		}
+		if (!millerRabin(n, rounds)) {
+			return false;
+		}
+		return !lucas || strongLucas(n);
+	}
+
+	/**
+	 * Baillie-PSW test
+	 * (trial division, Miller-Rabin base 2 and strong Lucas test)
+	 *
+	 * @param n the candidate
+	 * @return true: probable prime / false: composite
+	 */
+	public static boolean bailliePSW(MPInt n) {
+		if (n.bitLength() < 64) {
+			return isPrime(n.longValue());
+		}
+		if (!n.testBit(0) || hasSmallFactor(n)) {
+			return false;
+		}
+		if (!millerRabinBase(n, MPInt.TWO)) {
+			return false;
+		}
+		return strongLucas(n);
+	}
+
+	/**
+	 * Miller-Rabin test with random bases
+	 *
+	 * @param n the odd candidate (> 3)
+	 * @param rounds the number of rounds
+	 * @return true: probable prime / false: composite
+	 */
+	public boolean millerRabin(MPInt n, int rounds) {
+		MPInt n_3 = n.subtract(MPInt.valueOf(3));
+
+		for (int i = 0; i < rounds; i++) {
+			// 2 <= a <= n - 2
+			MPInt a = MPInt.random(rng, n_3).add(MPInt.TWO);
+			if (!millerRabinBase(n, a)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Strong probable prime test to base a
+	 *
+	 * @param n the odd candidate (> 3)
+	 * @param a the base
+	 * @return true: n is a strong probable prime to base a
+	 */
+	public static boolean millerRabinBase(MPInt n, MPInt a) {
+		BigInteger bn = n.bigInt;
+		BigInteger n_1 = bn.subtract(BigInteger.ONE);
+		int s = n_1.getLowestSetBit();
+		BigInteger d = n_1.shiftRight(s);
+
+		BigInteger x = a.bigInt.modPow(d, bn);
+		if (x.equals(BigInteger.ONE) || x.equals(n_1)) {
+			return true;
+		}
+		for (int r = 1; r < s; r++) {
+			x = x.multiply(x).mod(bn);
+			if (x.equals(n_1)) {
+				return true;
+			}
+			if (x.equals(BigInteger.ONE)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Strong Lucas probable prime test (Selfridge method A: P = 1)
+	 *
+	 * @param n the odd candidate (> 3)
+	 * @return true: strong Lucas probable prime / false: composite
+	 */
+	public static boolean strongLucas(MPInt n) {
+		BigInteger bn = n.bigInt;
+
+		// D = 5, -7, 9, -11, ... with (D|n) = -1
+		long d = 5;
+		for (int i = 0;; i++) {
+			int j = MPInt.jacobi(MPInt.valueOf(d), n);
+			if (j == -1) {
+				break;
+			}
+			if (j == 0 && MPInt.valueOf(Math.abs(d)).compareTo(n) != 0) {
+				return false;
+			}
+			// a perfect square has no such D
+			if (i == 10 && MPInt.isPerfectSquare(n)) {
+				return false;
+			}
+			d = (d > 0) ? -(d + 2) : -(d - 2);
+		}
+		BigInteger bd = BigInteger.valueOf(d);
+		BigInteger q = BigInteger.valueOf((1 - d) / 4).mod(bn);
+
+		// n + 1 = k * 2^s
+		BigInteger n1 = bn.add(BigInteger.ONE);
+		int s = n1.getLowestSetBit();
+		BigInteger k = n1.shiftRight(s);
+
+		BigInteger u = BigInteger.ONE;
+		BigInteger v = BigInteger.ONE;
+		BigInteger qk = q;
+
+		for (int i = k.bitLength() - 2; i >= 0; i--) {
+			// double
+			u = u.multiply(v).mod(bn);
+			v = v.multiply(v).subtract(qk.shiftLeft(1)).mod(bn);
+			qk = qk.multiply(qk).mod(bn);
+			if (k.testBit(i)) {
+				// add one (P = 1)
+				BigInteger u2 = half(u.add(v), bn);
+				v = half(bd.multiply(u).add(v), bn);
+				u = u2;
+				qk = qk.multiply(q).mod(bn);
+			}
+		}
+
+		if (u.signum() == 0 || v.signum() == 0) {
+			return true;
+		}
+		for (int r = 1; r < s; r++) {
+			v = v.multiply(v).subtract(qk.shiftLeft(1)).mod(bn);
+			if (v.signum() == 0) {
+				return true;
+			}
+			qk = qk.multiply(qk).mod(bn);
+		}
+		return false;
+	}
+
+	/**
+	 * Deterministic primality test for 64-bit values
+	 * (Miller-Rabin with a fixed base set, Montgomery arithmetic on long)
+	 *
+	 * @param n the value
+	 * @return true: prime / false: not prime
+	 */
+	public static boolean isPrime(long n) {
+		if (n < 2) {
+			return false;
+		}
+		if ((n & 1) == 0) {
+			return n == 2;
+		}
+		for (int i = 0; i < SMALL.length; i++) {
+			if (n % SMALL[i] == 0) {
+				return n == SMALL[i];
+			}
+		}
+		if (n < 97 * 97) {
+			return true;
+		}
+
+		long d = n - 1;
+		int s = Long.numberOfTrailingZeros(d);
+		d >>>= s;
+
+		// Montgomery constants (R = 2^64)
+		long ninv = n;
+		for (int i = 0; i < 5; i++) {
+			ninv *= 2 - n * ninv;
+		}
+		long r1 = Long.remainderUnsigned(-n, n);				// R mod n
+		long r2 = mulModSmall(r1, r1, n);					// R^2 mod n
+		long mOne = n - r1;								// -1 (Montgomery)
+
+		for (int i = 0; i < BASES64.length; i++) {
+			long a = Long.remainderUnsigned(BASES64[i], n);
+			if (a == 0) {
+				continue;
+			}
+			long x = montPow(montMul(a, r2, n, ninv), d, r1, n, ninv);
+			if (x == r1 || x == mOne) {
+				continue;
+			}
+			boolean composite = true;
+			for (int r = 1; r < s; r++) {
+				x = montMul(x, x, n, ninv);
+				if (x == mOne) {
+					composite = false;
+					break;
+				}
+			}
+			if (composite) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * has a factor in SMALL ?
+	 */
+	static boolean hasSmallFactor(MPInt n) {
+		long r1 = n.bigInt.mod(BigInteger.valueOf(PROD1)).longValue();
+		long r2 = n.bigInt.mod(BigInteger.valueOf(PROD2)).longValue();
+
+		for (int i = 0; i < SMALL.length; i++) {
+			long r = (SMALL[i] <= 47) ? r1 : r2;
+			if (r % SMALL[i] == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** x / 2 mod n */
+	private static BigInteger half(BigInteger x, BigInteger n) {
+		if (x.testBit(0)) {
+			x = x.add(n);
+		}
+		return x.shiftRight(1).mod(n);
+	}
+
+	/** a * b mod n (a, b < n < 2^63), by doubling */
+	private static long mulModSmall(long a, long b, long n) {
+		long r = 0;
+		a %= n;
+		while (b != 0) {
+			if ((b & 1) != 0) {
+				r += a;
+				if (r >= n || r < 0) {
+					r -= n;
+				}
+			}
+			a <<= 1;
+			if (a >= n || a < 0) {
+				a -= n;
+			}
+			b >>>= 1;
+		}
+		return r;
+	}
+
+	/** Montgomery multiplication a * b / 2^64 mod n (n < 2^63) */
+	private static long montMul(long a, long b, long n, long ninv) {
+		long lo = a * b;
+		long hi = Math.multiplyHigh(a, b);
+		long m = -lo * ninv;
+		long mlo = m * n;
+		long mhi = Math.multiplyHigh(m, n) + ((m >> 63) & n);
+		// lo + mlo = 0 (mod 2^64), carry if lo != 0
+		long t = hi + mhi + ((lo != 0) ? 1 : 0);
+		if (Long.compareUnsigned(t, n) >= 0) {
+			t -= n;
+		}
+		return t;
+	}
+
+	private static long montPow(long a, long e, long one, long n, long ninv) {
+		long r = one;
+		while (e != 0) {
+			if ((e & 1) != 0) {
+				r = montMul(r, a, n, ninv);
+			}
+			a = montMul(a, a, n, ninv);
+			e >>>= 1;
+		}
+		return r;
+	}
+}
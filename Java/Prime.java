@@ -20,6 +20,8 @@ public class Prime {
 	public static final MPInt ONE = MPInt.valueOf(1);
 	public static final MPInt TWO = MPInt.valueOf(2);
 	private static final int RABIN_P = 20;
+	/** minimum bit length for the sieve search (> log2(SIEVE_LIMIT)) */
+	private static final int SIEVE_MIN_BITS = 32;
 	static final int MP_PSMAX = 172;
 	private MPInt primeNo;
 	private SecureRandom rng;
@@ -120,6 +122,10 @@ public class Prime {
 			return false;
 		}
 
+		if (n.bitLength() < 64) {	// deterministic
+			return PrimalityTester.isPrime(n.longValue());
+		}
+
 		if (issPrime(n)) {
 			return true;
 		}
@@ -246,6 +252,11 @@ public class Prime {
 		p = p.setBit(bits - 1);
 		p = p.setBit(0);
 
+		if (bits >= SIEVE_MIN_BITS) {
+			primeNo = sievePrime(p, bits, dir);
+			return true;
+		}
+
 		while (!isPrime(p)) {
 
 			if (dir != 0) {
@@ -269,6 +280,48 @@ public class Prime {
 		return true;
 	}
 
+	/**
+	 * Prime search from p with an incremental sieve
+	 * The same candidates as the +-2 stepping loop are visited in the same
+	 * order (with the same wrap around), so the same prime is found.
+	 *
+	 * @param p the odd starting candidate (bits bits)
+	 * @param bits the bit length of the prime number
+	 * @param dir the search direction (0: downward)
+	 * @return the prime number
+	 */
+	static MPInt sievePrime(MPInt p, int bits, int dir) {
+		MPInt lo = ONE.setBit(bits - 1);				// 2^(bits-1) + 1
+		MPInt hi = ZERO.setBit(bits).subtract(ONE);	// 2^bits - 1
+		MPInt window = MPInt.valueOf(PrimeSieve.WINDOW - 1);
+		PrimeSieve sv = new PrimeSieve(p, (dir != 0) ? 1 : -1);
+
+		for (;;) {
+			// number of candidates before the range boundary
+			MPInt base = sv.getBase();
+			MPInt d = (dir != 0) ? hi.subtract(base) : base.subtract(lo);
+			d = d.shiftRight(1);
+			int count = (d.compareTo(window) >= 0) ? PrimeSieve.WINDOW
+					: d.intValue() + 1;
+
+			sv.sieve(count);
+			for (int j = 0; j < count; j++) {
+				if (sv.isCandidate(j)) {
+					MPInt c = sv.candidate(j);
+					if (c.isProbablePrime(RABIN_P)) {
+						return c;
+					}
+				}
+			}
+
+			if (count < PrimeSieve.WINDOW) {
+				sv.reset((dir != 0) ? lo : hi);
+			} else {
+				sv.advance(count);
+			}
+		}
+	}
+
 	/**
 	 * Generation of random prime number
 	 *
@@ -377,7 +430,7 @@ public class Prime {
 			return false;
 		}
 
-		MPInt gcd = a.gcd(b);
+		MPInt gcd = MPInt.gcd(a, b);
 
 		if (gcd.compareTo(ONE) == 0) {
 			return true;
@@ -32,12 +32,12 @@ class PrimeGen {
 		Stopw sw = new Stopw();
 		sw.start();
 
-		Prime pn = new Prime(bitLen, rng); // generate prime
+		ParallelPrimeGenerator pg = new ParallelPrimeGenerator(rng);
+		p = pg.generate(bitLen); // generate prime
 		sw.stop();
 
 		System.out.print("Prime generation time = " + sw.getTime() + " msec\n");
 
-		p = pn.getPrime();
 		System.out.println("prime = " + p.toString(10) + " (" + p.bitLength()
 				+ "bits)");
 
@@ -5,16 +5,33 @@
  */
 package Blanclux.math;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
 // Prime List Generation
 public class PrimeList {
 	static boolean[] isprime;
 
+	/** odd numbers per segment (32 KB of bits) */
+	static final int SEGMENT_ODDS = 32 * 1024 * 8;
+
+	/** upper bound of the segmented sieve */
+	public static final long MAX_LIMIT = 1000000000000L;
+
 	public static void main(String[] args) {
-		int n = 10000;
+		long n = 10000;
 
 		if (args.length != 0) {
 			try {
-				n = Integer.parseInt(args[0]);
+				n = Long.parseLong(args[0]);
 			} catch (Exception e) {
 				throw new IllegalArgumentException("Illegal number");
 			}
@@ -23,28 +40,34 @@ public class PrimeList {
 				.println("< List of Prime Numbers (by Sieve of Eratosthenes) >");
 		System.out.println("  Maximum Number : " + n + "\n");
 
-		isprime = new boolean[n];
-
-		Eratosthenes(n);
-
+		Writer out = new BufferedWriter(new OutputStreamWriter(System.out),
+				64 * 1024);
+		PrimitiveIterator.OfLong it = iterator(2, n);
 		int j = 0;
-		int count = 0;
-		for (int i = 2; i < n; i++) {
-			if (isprime[i]) {
-				System.out.print(i + " ");
-				j++;
+		long count = 0;
+
+		try {
+			while (it.hasNext()) {
+				out.write(Long.toString(it.nextLong()));
+				out.write(' ');
 				count++;
+				if (++j == 10) {
+					out.write('\n');
+					j = 0;
+				}
 			}
-			if (j != 0 && j % 10 == 0) {
-				System.out.println("");
-				j = 0;
-			}
+			out.flush();
+		} catch (IOException e) {
+			System.err.println(e.toString());
 		}
 		System.out.println("\n# " + count + " primes");
 	}
 
-	// Sieve of Eratosthenes
+	// Sieve of Eratosthenes (result in isprime[0 .. n-1])
 	public static void Eratosthenes(int n) {
+		if (isprime == null || isprime.length < Math.max(n, 2)) {
+			isprime = new boolean[Math.max(n, 2)];
+		}
 		isprime[0] = false;
 		isprime[1] = false;
 
@@ -54,10 +77,238 @@ public class PrimeList {
 
 		for (int k = 2; k * k < n; k++) {
 			if (isprime[k]) {
-				for (int i = k * 2; i < n; i += k) {
+				for (int i = k * k; i < n; i += k) {
 					isprime[i] = false;
 				}
 			}
 		}
 	}
+
+	/**
+	 * Primes in [from, to) (segmented sieve)
+	 *
+	 * @param from the lower bound (inclusive)
+	 * @param to the upper bound (exclusive, <= MAX_LIMIT)
+	 * @return the iterator of the primes in ascending order
+	 */
+	public static PrimitiveIterator.OfLong iterator(long from, long to) {
+		return new SegmentIterator(from, to);
+	}
+
+	/**
+	 * Primes in [from, to) as a LongStream
+	 *
+	 * @param from the lower bound (inclusive)
+	 * @param to the upper bound (exclusive, <= MAX_LIMIT)
+	 * @param parallel true: the segments are sieved in parallel
+	 * @return the primes in ascending order
+	 */
+	public static LongStream primes(long from, long to, boolean parallel) {
+		checkRange(from, to);
+		if (!parallel) {
+			return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(
+					iterator(from, to), Spliterator.ORDERED
+							| Spliterator.DISTINCT | Spliterator.SORTED
+							| Spliterator.NONNULL | Spliterator.IMMUTABLE),
+					false);
+		}
+
+		final int[] base = basePrimes(to);
+		final long lo = Math.max(from, 2);
+		final long span = 2L * SEGMENT_ODDS;
+		long segs = (to > lo) ? (to - lo + span - 1) / span : 0;
+
+		return LongStream.range(0, segs).parallel().flatMap(i -> {
+			long s = lo + i * span;
+			long e = Math.min(s + span, to);
+			long[] bits = new long[SEGMENT_ODDS / 64];
+			return LongStream.of(collect(s, e, base, bits));
+		});
+	}
+
+	/**
+	 * Number of primes in [from, to)
+	 */
+	public static long count(long from, long to, boolean parallel) {
+		return primes(from, to, parallel).count();
+	}
+
+	/**
+	 * Odd primes below sqrt(to) (simple odd-only sieve)
+	 */
+	static int[] basePrimes(long to) {
+		int lim = (int) Math.sqrt((double) to) + 2;
+		boolean[] comp = new boolean[lim + 1];
+		int num = 0;
+
+		for (int i = 3; i <= lim; i += 2) {
+			if (!comp[i]) {
+				num++;
+				for (long k = (long) i * i; k <= lim; k += 2 * i) {
+					comp[(int) k] = true;
+				}
+			}
+		}
+		int[] p = new int[num];
+		num = 0;
+		for (int i = 3; i <= lim; i += 2) {
+			if (!comp[i]) {
+				p[num++] = i;
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * Sieves the odd numbers of [lo, hi) (hi - lo <= 2 * SEGMENT_ODDS).
+	 * Bit i of bits is set if lo' + 2i is composite (lo' = first odd >= lo).
+	 *
+	 * @return the number of odd candidates in the segment
+	 */
+	static int sieveSegment(long lo, long hi, int[] base, long[] bits) {
+		long first = lo | 1;
+		if (first >= hi) {
+			return 0;
+		}
+		int n = (int) ((hi - first + 1) >>> 1);
+
+		for (int i = 0; i < ((n + 63) >>> 6); i++) {
+			bits[i] = 0;
+		}
+		for (int k = 0; k < base.length; k++) {
+			long p = base[k];
+			long pp = p * p;
+			if (pp >= hi) {
+				break;
+			}
+			long start = (pp >= first) ? pp : ((first + p - 1) / p) * p;
+			if ((start & 1) == 0) {
+				start += p;
+			}
+			for (long j = (start - first) >>> 1; j < n; j += p) {
+				bits[(int) (j >>> 6)] |= 1L << j;
+			}
+		}
+		if (first == 1) {
+			bits[0] |= 1L;		// 1 is not prime
+		}
+		return n;
+	}
+
+	/**
+	 * Primes of one segment [lo, hi) as an array
+	 */
+	private static long[] collect(long lo, long hi, int[] base, long[] bits) {
+		int n = sieveSegment(lo, hi, base, bits);
+		boolean two = (lo <= 2 && hi > 2);
+		long first = lo | 1;
+		int num = two ? 1 : 0;
+
+		for (int i = 0; i < ((n + 63) >>> 6); i++) {
+			num += Long.bitCount(~bits[i] & wordMask(i, n));
+		}
+		long[] ret = new long[num];
+		num = 0;
+		if (two) {
+			ret[num++] = 2;
+		}
+		for (int i = 0; i < ((n + 63) >>> 6); i++) {
+			long w = ~bits[i] & wordMask(i, n);
+			while (w != 0) {
+				int b = Long.numberOfTrailingZeros(w);
+				ret[num++] = first + 2L * ((i << 6) + b);
+				w &= w - 1;
+			}
+		}
+		return ret;
+	}
+
+	private static long wordMask(int i, int n) {
+		int rest = n - (i << 6);
+		return (rest >= 64) ? -1L : (1L << rest) - 1;
+	}
+
+	private static void checkRange(long from, long to) {
+		if (from < 0 || to > MAX_LIMIT) {
+			throw new IllegalArgumentException("Illegal range");
+		}
+	}
+
+	/**
+	 * Streaming iterator over the segments
+	 */
+	private static class SegmentIterator implements PrimitiveIterator.OfLong {
+		private final long to;
+		private final int[] base;
+		private final long[] bits = new long[SEGMENT_ODDS / 64];
+
+		/** current segment */
+		private long segLo;
+		private long first;
+		private int n;
+		private int word;
+		private long cur;
+
+		/** pending prime 2 */
+		private boolean two;
+
+		SegmentIterator(long from, long to) {
+			checkRange(from, to);
+			this.to = to;
+			base = basePrimes(to);
+			segLo = Math.max(from, 2);
+			two = (segLo <= 2 && to > 2);
+			n = 0;
+			word = 0;
+			cur = 0;
+			nextSegment();
+		}
+
+		private void nextSegment() {
+			while (segLo < to) {
+				long hi = Math.min(segLo + 2L * SEGMENT_ODDS, to);
+				first = segLo | 1;
+				n = sieveSegment(segLo, hi, base, bits);
+				segLo = hi;
+				word = 0;
+				if (n > 0) {
+					cur = ~bits[0] & wordMask(0, n);
+					return;
+				}
+			}
+			n = 0;
+			cur = 0;
+		}
+
+		public boolean hasNext() {
+			if (two) {
+				return true;
+			}
+			for (;;) {
+				if (cur != 0) {
+					return true;
+				}
+				if (++word < ((n + 63) >>> 6)) {
+					cur = ~bits[word] & wordMask(word, n);
+				} else if (segLo < to) {
+					nextSegment();
+				} else {
+					return false;
+				}
+			}
+		}
+
+		public long nextLong() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			if (two) {
+				two = false;
+				return 2;
+			}
+			int b = Long.numberOfTrailingZeros(cur);
+			cur &= cur - 1;
+			return first + 2L * ((word << 6) + b);
+		}
+	}
 }
@@ -0,0 +1,141 @@
+/**
+ * PrimeSieve.java
+ *  written by blanclux
+ *  This software is distributed on an "AS IS" basis WITHOUT WARRANTY OF ANY KIND.
+ */
+package Blanclux.math;
+
+import java.math.BigInteger;
+
+/**
+ * Incremental sieve for prime search
+ * <p>
+ * The residues of the window base modulo the odd primes below SIEVE_LIMIT
+ * are computed once and then updated in int arithmetic as the base moves.
+ * A window of odd candidates base + dir*2j (0 <= j < count) is sieved
+ * into a bitset, so only candidates without a small factor reach the
+ * probabilistic test.
+ */
+final class PrimeSieve {
+	/** number of odd candidates per window */
+	static final int WINDOW = 4096;
+
+	/** bound of the sieving primes */
+	static final int SIEVE_LIMIT = 1 << 16;
+
+	/** odd primes below SIEVE_LIMIT */
+	private static final int[] PRIMES = oddSmallPrimes();
+
+	/** window base (odd) */
+	private MPInt base;
+
+	/** direction (1: upward, -1: downward) */
+	private final int dir;
+
+	/** base mod PRIMES[i] */
+	private final int[] res = new int[PRIMES.length];
+
+	/** composite flags of the current window */
+	private final long[] comp = new long[(WINDOW + 63) / 64];
+
+	/**
+	 * Constructor
+	 *
+	 * @param start the odd starting candidate
+	 * @param dir 1: upward / -1: downward
+	 */
+	PrimeSieve(MPInt start, int dir) {
+		this.dir = dir;
+		reset(start);
+	}
+
+	/**
+	 * Moves the base to a new starting candidate (residues recomputed).
+	 */
+	void reset(MPInt start) {
+		base = start;
+		for (int i = 0; i < PRIMES.length; i++) {
+			res[i] = start.bigInt.mod(BigInteger.valueOf(PRIMES[i])).intValue();
+		}
+	}
+
+	/**
+	 * Moves the base by count candidates (residues updated in place).
+	 */
+	void advance(int count) {
+		int step = 2 * count;
+
+		for (int i = 0; i < PRIMES.length; i++) {
+			int q = PRIMES[i];
+			int r = (res[i] + dir * (step % q)) % q;
+			res[i] = (r < 0) ? r + q : r;
+		}
+		base = base.add(MPInt.valueOf((long) dir * step));
+	}
+
+	/**
+	 * Gets the window base
+	 */
+	MPInt getBase() {
+		return base;
+	}
+
+	/**
+	 * Gets the j-th candidate of the window
+	 */
+	MPInt candidate(int j) {
+		return base.add(MPInt.valueOf((long) dir * 2 * j));
+	}
+
+	/**
+	 * Sieves count (<= WINDOW) candidates.
+	 * The candidates must be larger than SIEVE_LIMIT.
+	 */
+	void sieve(int count) {
+		int words = (count + 63) >>> 6;
+
+		for (int i = 0; i < words; i++) {
+			comp[i] = 0;
+		}
+		for (int i = 0; i < PRIMES.length; i++) {
+			int q = PRIMES[i];
+			int inv2 = (q + 1) >>> 1;
+			int r = (dir > 0) ? (q - res[i]) % q : res[i];
+			int j = (int) ((long) r * inv2 % q);
+
+			for (; j < count; j += q) {
+				comp[j >>> 6] |= 1L << j;
+			}
+		}
+	}
+
+	/**
+	 * Is the j-th candidate free of small factors ?
+	 */
+	boolean isCandidate(int j) {
+		return (comp[j >>> 6] & (1L << j)) == 0;
+	}
+
+	/** odd primes below SIEVE_LIMIT (Sieve of Eratosthenes) */
+	private static int[] oddSmallPrimes() {
+		boolean[] comp = new boolean[SIEVE_LIMIT];
+		int num = 0;
+
+		for (int i = 3; i < SIEVE_LIMIT; i += 2) {
+			if (!comp[i]) {
+				num++;
+				for (long j = (long) i * i; j < SIEVE_LIMIT; j += 2 * i) {
+					comp[(int) j] = true;
+				}
+			}
+		}
+		int[] p = new int[num];
+		num = 0;
+		for (int i = 3; i < SIEVE_LIMIT; i += 2) {
+			if (!comp[i]) {
+				p[num++] = i;
+			}
+		}
+		return p;
+	}
+}